@@ -0,0 +1,177 @@
+package org.fanlychie.commons.file;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 非阻塞的异步响应写出器. 只在输出流就绪时写出下一块内容, 输出流未就绪时立即返回,
+ * 由容器在客户端可以继续接收时回调 {@link #onWritePossible()}, 写出期间不占用请求线程
+ * Created by fanlychie on 2026/10/17.
+ */
+class AsyncResponseWriter implements WriteListener, AsyncListener {
+
+    /**
+     * 异步上下文
+     */
+    private final AsyncContext asyncContext;
+
+    /**
+     * 可定位的读取通道
+     */
+    private final SeekableByteChannel in;
+
+    /**
+     * 输出流
+     */
+    private final ServletOutputStream out;
+
+    /**
+     * 依次响应的内容片段
+     */
+    private final Iterator<ResponsePart> parts;
+
+    /**
+     * 缓冲区
+     */
+    private byte[] buffer;
+
+    /**
+     * 当前片段的片段头是否已写出
+     */
+    private boolean headerWritten;
+
+    /**
+     * 当前的内容片段
+     */
+    private ResponsePart part;
+
+    /**
+     * 当前片段下一次读取的位置
+     */
+    private long position;
+
+    /**
+     * 当前片段剩余的字节数
+     */
+    private long remaining;
+
+    /**
+     * 是否已结束
+     */
+    private boolean finished;
+
+    /**
+     * 创建一个异步响应写出器
+     *
+     * @param asyncContext 异步上下文
+     * @param in           可定位的读取通道, 写出结束后关闭
+     * @param out          输出流
+     * @param parts        依次响应的内容片段
+     */
+    AsyncResponseWriter(AsyncContext asyncContext, SeekableByteChannel in, ServletOutputStream out, List<ResponsePart> parts) {
+        this.asyncContext = asyncContext;
+        this.in = in;
+        this.out = out;
+        this.parts = parts.iterator();
+        this.buffer = BufferPool.acquireArray();
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        while (!finished && out.isReady()) {
+            if (part == null || (headerWritten && remaining == 0)) {
+                if (!parts.hasNext()) {
+                    finish();
+                    return;
+                }
+                part = parts.next();
+                headerWritten = false;
+                position = part.getStart();
+                remaining = part.getLength();
+            }
+            if (!headerWritten) {
+                headerWritten = true;
+                if (part.getHeader() != null) {
+                    out.write(part.getHeader());
+                }
+                continue;
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, remaining));
+            int read;
+            if (in instanceof FileChannel) {
+                read = ((FileChannel) in).read(chunk, position);
+            } else {
+                in.position(position);
+                read = in.read(chunk);
+            }
+            if (read == -1) {
+                throw new EOFException();
+            }
+            position += read;
+            remaining -= read;
+            out.write(buffer, 0, read);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        finish();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+
+    }
+
+    /**
+     * 结束写出, 完成异步请求
+     */
+    private synchronized void finish() {
+        if (!finished) {
+            release();
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * 关闭读取通道, 归还缓冲区
+     */
+    private synchronized void release() {
+        finished = true;
+        if (buffer != null) {
+            BufferPool.release(buffer);
+            buffer = null;
+            try {
+                in.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+package org.fanlychie.commons.file;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * 非阻塞的 Servlet 文件上传. 以 {@link ReadListener} 的方式在请求体数据到达时逐块读取, 由流式解析器解析出文件并直接写入本地文件,
+ * 数据未到达时立即返回, 上传期间不占用请求线程
+ * Created by fanlychie on 2026/10/17.
+ */
+public class AsyncServletFileUpload extends LocalFileUpload {
+
+    /**
+     * HttpServletRequest
+     */
+    private HttpServletRequest request;
+
+    /**
+     * 创建一个非阻塞的 Servlet 文件上传
+     *
+     * @param request HttpServletRequest
+     */
+    public AsyncServletFileUpload(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * 以阻塞的方式执行文件上传
+     *
+     * @return 返回文件上传报告
+     */
+    @Override
+    public FileUploadReport upload() {
+        FileUploadReport report = new FileUploadReport();
+        String boundary = MultipartStreamParser.getBoundary(request.getContentType());
+        if (boundary == null) {
+            report.addFileUploadFeedback("不支持文件上传的表单域", false);
+            return report;
+        }
+        PartHandler handler = new PartHandler(report);
+        MultipartStreamParser parser = new MultipartStreamParser(boundary, handler);
+        byte[] buffer = BufferPool.acquireArray();
+        try (InputStream in = request.getInputStream()) {
+            int read;
+            while (!parser.isFinished() && (read = in.read(buffer)) != -1) {
+                parser.feed(buffer, 0, read);
+            }
+            parser.finish();
+        } catch (IOException e) {
+            e.printStackTrace();
+            handler.abort();
+            report.addFileUploadFeedback("文件上传失败, 请重新上传", false);
+        } finally {
+            BufferPool.release(buffer);
+        }
+        return report;
+    }
+
+    /**
+     * 以非阻塞的方式执行文件上传, 不超时. 见 {@link #upload(Consumer, long)}
+     *
+     * @param callback 上传结束后的回调, 在容器线程中执行
+     */
+    public void upload(Consumer<FileUploadReport> callback) {
+        upload(callback, 0);
+    }
+
+    /**
+     * 以非阻塞的方式执行文件上传, 调用后立即返回, 请求体读取完毕后以文件上传报告回调, 回调之后异步请求结束.
+     * 超时后放弃正在写入的文件, 以失败的上传报告回调
+     *
+     * @param callback 上传结束后的回调, 在容器线程中执行
+     * @param timeout  异步处理的超时时间, 单位(毫秒), 0 表示不超时
+     */
+    public void upload(Consumer<FileUploadReport> callback, long timeout) {
+        FileUploadReport report = new FileUploadReport();
+        String boundary = MultipartStreamParser.getBoundary(request.getContentType());
+        if (boundary == null) {
+            report.addFileUploadFeedback("不支持文件上传的表单域", false);
+            callback.accept(report);
+            return;
+        }
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(timeout);
+        try {
+            ServletInputStream in = request.getInputStream();
+            UploadReadListener listener = new UploadReadListener(asyncContext, in, new PartHandler(report), boundary, report, callback);
+            asyncContext.addListener(listener);
+            in.setReadListener(listener);
+        } catch (IOException e) {
+            e.printStackTrace();
+            report.addFileUploadFeedback("文件上传失败, 请重新上传", false);
+            try {
+                callback.accept(report);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+    }
+
+    /**
+     * 请求体数据的读取监听器, 同时监听异步请求的超时和出错
+     */
+    private class UploadReadListener implements ReadListener, AsyncListener {
+
+        /**
+         * 异步上下文
+         */
+        private final AsyncContext asyncContext;
+
+        /**
+         * 请求输入流
+         */
+        private final ServletInputStream in;
+
+        /**
+         * 文件部分的处理器
+         */
+        private final PartHandler handler;
+
+        /**
+         * 流式解析器
+         */
+        private final MultipartStreamParser parser;
+
+        /**
+         * 文件上传报告
+         */
+        private final FileUploadReport report;
+
+        /**
+         * 上传结束后的回调
+         */
+        private final Consumer<FileUploadReport> callback;
+
+        /**
+         * 是否已结束
+         */
+        private boolean finished;
+
+        UploadReadListener(AsyncContext asyncContext, ServletInputStream in, PartHandler handler, String boundary,
+                           FileUploadReport report, Consumer<FileUploadReport> callback) {
+            this.asyncContext = asyncContext;
+            this.in = in;
+            this.handler = handler;
+            this.parser = new MultipartStreamParser(boundary, handler);
+            this.report = report;
+            this.callback = callback;
+        }
+
+        @Override
+        public synchronized void onDataAvailable() throws IOException {
+            if (finished) {
+                return;
+            }
+            byte[] buffer = BufferPool.acquireArray();
+            try {
+                int read;
+                while (in.isReady() && (read = in.read(buffer)) != -1) {
+                    parser.feed(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                BufferPool.release(buffer);
+            }
+        }
+
+        @Override
+        public synchronized void onAllDataRead() {
+            if (finished) {
+                return;
+            }
+            try {
+                parser.finish();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            finish();
+        }
+
+        @Override
+        public synchronized void onError(Throwable t) {
+            if (!finished) {
+                fail(t);
+            }
+        }
+
+        @Override
+        public synchronized void onTimeout(AsyncEvent event) {
+            if (finished) {
+                return;
+            }
+            handler.abort();
+            report.addFileUploadFeedback("文件上传超时, 请重新上传", false);
+            finish();
+        }
+
+        @Override
+        public synchronized void onError(AsyncEvent event) {
+            if (!finished) {
+                fail(event.getThrowable() != null ? event.getThrowable() : new IOException("异步请求出错"));
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+
+        }
+
+        private void fail(Throwable e) {
+            e.printStackTrace();
+            handler.abort();
+            report.addFileUploadFeedback("文件上传失败, 请重新上传", false);
+            finish();
+        }
+
+        private void finish() {
+            finished = true;
+            try {
+                callback.accept(report);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+    }
+
+    /**
+     * 将解析到的文件部分写入本地文件, 非文件的表单域被忽略
+     */
+    private class PartHandler implements MultipartStreamParser.Handler {
+
+        /**
+         * 文件上传报告
+         */
+        private final FileUploadReport report;
+
+        /**
+         * 当前文件部分的输出流, 当前部分不是文件时为 null
+         */
+        private PartOutputStream out;
+
+        PartHandler(FileUploadReport report) {
+            this.report = report;
+        }
+
+        @Override
+        public void startPart(String name, String fileName) {
+            if (fileName != null && !fileName.isEmpty()) {
+                out = new PartOutputStream(report, fileName);
+            }
+        }
+
+        @Override
+        public void partData(byte[] data, int offset, int count) {
+            if (out != null) {
+                out.write(data, offset, count);
+            }
+        }
+
+        @Override
+        public void endPart() {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+
+        /**
+         * 中止当前未接收完毕的文件
+         */
+        void abort() {
+            if (out != null) {
+                out.abort();
+                out = null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package org.fanlychie.commons.file;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * I/O 缓冲区池, 由 {@link FileUtils} 和 {@link URLFile} 的所有读写操作共享, 避免每次读写都分配新的缓冲区.
+ * 池按线程分段, 每段是一个有界队列, 池满时归还的缓冲区直接丢弃, 池空时分配新的缓冲区.
+ * 池的容量和缓冲区大小由 {@link LocalFileUploadConfig} 配置
+ * Created by fanlychie on 2026/10/17.
+ */
+final class BufferPool {
+
+    /**
+     * 分段数, 2 的整数次幂
+     */
+    private static final int STRIPES = stripes();
+
+    /**
+     * 从池中取到缓冲区的次数
+     */
+    private static final LongAdder HITS = new LongAdder();
+
+    /**
+     * 池中没有可用的缓冲区而新分配的次数
+     */
+    private static final LongAdder MISSES = new LongAdder();
+
+    /**
+     * 堆内缓冲区分段
+     */
+    private static volatile ArrayBlockingQueue<byte[]>[] arrays;
+
+    /**
+     * 直接缓冲区分段
+     */
+    private static volatile ArrayBlockingQueue<ByteBuffer>[] directs;
+
+    static {
+        clear();
+    }
+
+    // 私有
+    private BufferPool() {
+
+    }
+
+    /**
+     * 获取一个堆内缓冲区, 使用完毕后需调用 {@link #release(byte[])} 归还
+     *
+     * @return 返回长度为 {@link LocalFileUploadConfig#bufferSize} 的字节数组
+     */
+    static byte[] acquireArray() {
+        byte[] buffer = stripe(arrays).poll();
+        if (buffer != null && buffer.length == LocalFileUploadConfig.bufferSize) {
+            HITS.increment();
+            return buffer;
+        }
+        MISSES.increment();
+        return new byte[LocalFileUploadConfig.bufferSize];
+    }
+
+    /**
+     * 归还堆内缓冲区
+     *
+     * @param buffer 由 {@link #acquireArray()} 获取的缓冲区
+     */
+    static void release(byte[] buffer) {
+        if (buffer != null && buffer.length == LocalFileUploadConfig.bufferSize) {
+            stripe(arrays).offer(buffer);
+        }
+    }
+
+    /**
+     * 获取一个直接缓冲区, 使用完毕后需调用 {@link #release(ByteBuffer)} 归还
+     *
+     * @return 返回容量为 {@link LocalFileUploadConfig#bufferSize} 且已清空的直接缓冲区
+     */
+    static ByteBuffer acquireDirect() {
+        ByteBuffer buffer = stripe(directs).poll();
+        if (buffer != null && buffer.capacity() == LocalFileUploadConfig.bufferSize) {
+            HITS.increment();
+            buffer.clear();
+            return buffer;
+        }
+        MISSES.increment();
+        return ByteBuffer.allocateDirect(LocalFileUploadConfig.bufferSize);
+    }
+
+    /**
+     * 归还直接缓冲区
+     *
+     * @param buffer 由 {@link #acquireDirect()} 获取的缓冲区
+     */
+    static void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == LocalFileUploadConfig.bufferSize) {
+            stripe(directs).offer(buffer);
+        }
+    }
+
+    /**
+     * 按当前配置的池容量重建缓冲区池, 池中原有的缓冲区被丢弃
+     */
+    static void clear() {
+        int capacity = Math.max(1, (LocalFileUploadConfig.bufferPoolSize + STRIPES - 1) / STRIPES);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayBlockingQueue<byte[]>[] newArrays = new ArrayBlockingQueue[STRIPES];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayBlockingQueue<ByteBuffer>[] newDirects = new ArrayBlockingQueue[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            newArrays[i] = new ArrayBlockingQueue<>(capacity);
+            newDirects[i] = new ArrayBlockingQueue<>(capacity);
+        }
+        arrays = newArrays;
+        directs = newDirects;
+    }
+
+    /**
+     * 获取从池中取到缓冲区的次数
+     *
+     * @return 返回命中次数
+     */
+    static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * 获取池中没有可用的缓冲区而新分配的次数
+     *
+     * @return 返回未命中次数
+     */
+    static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * 获取当前线程对应的分段
+     *
+     * @param stripes 分段数组
+     * @return 返回当前线程对应的分段
+     */
+    private static <T> ArrayBlockingQueue<T> stripe(ArrayBlockingQueue<T>[] stripes) {
+        return stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+    }
+
+    /**
+     * 计算分段数, 不小于处理器个数的 2 的整数次幂
+     *
+     * @return 返回分段数
+     */
+    private static int stripes() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < processors) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.fanlychie.commons.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * 断点续传的检查点, 记录下载的 URL、服务器文件的校验值和已确认写入磁盘的字节数
+ * Created by fanlychie on 2026/10/17.
+ */
+class DownloadCheckpoint {
+
+    /**
+     * 超链接地址
+     */
+    private final String url;
+
+    /**
+     * 服务器文件的 ETag 或 Last-Modified
+     */
+    private final String validator;
+
+    /**
+     * 已确认写入磁盘的字节数
+     */
+    private final long bytes;
+
+    /**
+     * 创建一个检查点
+     *
+     * @param url       超链接地址
+     * @param validator 服务器文件的 ETag 或 Last-Modified
+     * @param bytes     已确认写入磁盘的字节数
+     */
+    DownloadCheckpoint(String url, String validator, long bytes) {
+        this.url = url;
+        this.validator = validator;
+        this.bytes = bytes;
+    }
+
+    /**
+     * 读取检查点
+     *
+     * @param file 检查点文件
+     * @return 返回检查点, 文件不存在或内容不完整时返回 null
+     */
+    static DownloadCheckpoint load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            String url = properties.getProperty("url");
+            String validator = properties.getProperty("validator");
+            String bytes = properties.getProperty("bytes");
+            if (url == null || validator == null || bytes == null) {
+                return null;
+            }
+            return new DownloadCheckpoint(url, validator, Long.parseLong(bytes));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 保存检查点, 先写到临时文件再以原子重命名的方式替换, 不会留下不完整的检查点
+     *
+     * @param file 检查点文件
+     * @throws IOException
+     */
+    void save(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("validator", validator);
+        properties.setProperty("bytes", String.valueOf(bytes));
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getValidator() {
+        return validator;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+}
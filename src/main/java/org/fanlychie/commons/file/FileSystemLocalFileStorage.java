@@ -0,0 +1,308 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 基于文件系统的本地文件存储, 文件存放在 {@link LocalFileUploadConfig#storageRootFolder} 下,
+ * 以 Key 的前 {@link LocalFileUploadConfig#childFolderLength} * {@link LocalFileUploadConfig#shardLevels} 个字符逐级作为子目录名称,
+ * eg: 子目录长度为 2, 层级为 2 时, 文件存放在 ab/cd/abcd... 中. 设置了迁移前的子目录结构时, 当前结构中找不到的文件再到迁移前的结构中查找
+ * Created by fanlychie on 2026/10/17.
+ */
+public class FileSystemLocalFileStorage implements LocalFileStorage {
+
+    /**
+     * 子目录中不属于本地文件的辅助文件(如替换写出的临时文件、去重的链接文件)的名称前缀,
+     * 扫描和重新分片子目录时跳过以此开头的文件
+     */
+    static final String HIDDEN_PREFIX = ".";
+
+    /**
+     * 文件系统是否支持查询链接数
+     */
+    private static final boolean UNIX_ATTRIBUTES = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    /**
+     * 以原子的方式新建本地文件. 正常情况下只需一次系统调用, 子目录不存在时才创建子目录
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回本地文件对象
+     * @throws FileAlreadyExistsException 文件已经存在时抛出
+     */
+    @Override
+    public LocalFile create(String fileKey) throws FileAlreadyExistsException {
+        File localFileFoloder = getLocalFileFolder(fileKey);
+        if (localFileFoloder == null) {
+            throw new IllegalArgumentException("文件名有效长度不能小于 " + LocalFileUploadConfig.childFolderLength * LocalFileUploadConfig.shardLevels + ": " + fileKey);
+        }
+        File localFile = new File(localFileFoloder, fileKey);
+        File previousLocalFile = getPreviousLocalFilePath(fileKey);
+        if (previousLocalFile != null && previousLocalFile.exists()) {
+            throw new FileAlreadyExistsException(previousLocalFile.getPath());
+        }
+        try {
+            try {
+                Files.createFile(localFile.toPath());
+            } catch (NoSuchFileException e) {
+                Files.createDirectories(localFileFoloder.toPath());
+                Files.createFile(localFile.toPath());
+            }
+            LocalFileShards.markExists(getShard(fileKey));
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+        return new LocalFile(fileKey, localFile, this);
+    }
+
+    @Override
+    public LocalFileMetadata getMetadata(String fileKey) {
+        File localFileFoloder = getLocalFileFolder(fileKey);
+        if (localFileFoloder == null) {
+            return null;
+        }
+        String shard = getShard(fileKey);
+        boolean shardExists = LocalFileShards.isKnown(shard);
+        if (!shardExists) {
+            // 子目录可能由其它进程或节点创建, 以文件系统为准
+            shardExists = localFileFoloder.isDirectory();
+            if (shardExists) {
+                LocalFileShards.markExists(shard);
+            }
+        }
+        if (shardExists) {
+            File localFile = new File(localFileFoloder, fileKey);
+            if (localFile.isFile()) {
+                return new LocalFileMetadata(fileKey, localFile, localFile.length(), localFile.lastModified(), FileUtils.getContentType(fileKey));
+            }
+        }
+        File previousLocalFile = getPreviousLocalFilePath(fileKey);
+        if (previousLocalFile != null && previousLocalFile.isFile()) {
+            return new LocalFileMetadata(fileKey, previousLocalFile, previousLocalFile.length(), previousLocalFile.lastModified(), FileUtils.getContentType(fileKey));
+        }
+        return null;
+    }
+
+    @Override
+    public SeekableByteChannel openReadChannel(String fileKey) throws IOException {
+        File localFile = getExistingLocalFilePath(fileKey);
+        File previousLocalFile = getPreviousLocalFilePath(fileKey);
+        if (previousLocalFile == null) {
+            return new FileInputStream(localFile).getChannel();
+        }
+        // 迁移期间文件可能在两次查找之间被移动, 依次尝试当前结构、迁移前的结构、当前结构
+        try {
+            return new FileInputStream(localFile).getChannel();
+        } catch (FileNotFoundException e) {
+            try {
+                return new FileInputStream(previousLocalFile).getChannel();
+            } catch (FileNotFoundException ex) {
+                return new FileInputStream(localFile).getChannel();
+            }
+        }
+    }
+
+    /**
+     * 打开文件的输出流. 文件的链接数为 1 时原地写出, 只需查询一次链接数和打开一次文件, 放弃时已写出的内容无法撤销.
+     * 按内容去重的文件与其它 Key 以硬链接共享同一份内容, 此时内容先写到同目录下的临时文件, 关闭时以原子的方式替换文件,
+     * 只断开本 Key 的链接, 不会改写其它 Key 的内容, 放弃时删除临时文件. 文件系统不支持查询链接数时总是替换文件
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回输出流
+     * @throws IOException 文件不存在或创建临时文件出错时抛出
+     */
+    @Override
+    public LocalFileOutputStream openOutputStream(String fileKey) throws IOException {
+        File previousLocalFile = getPreviousLocalFilePath(fileKey);
+        File localFile = previousLocalFile != null && previousLocalFile.isFile() ? previousLocalFile : getExistingLocalFilePath(fileKey);
+        if (UNIX_ATTRIBUTES) {
+            // 文件不存在时抛出 NoSuchFileException
+            if ((Integer) Files.getAttribute(localFile.toPath(), "unix:nlink") == 1) {
+                return new FileOutput(new FileOutputStream(localFile), null, localFile);
+            }
+        } else if (!localFile.isFile()) {
+            throw new FileNotFoundException(localFile.getPath());
+        }
+        File temp = File.createTempFile(HIDDEN_PREFIX + fileKey, ".tmp", localFile.getParentFile());
+        return new FileOutput(new FileOutputStream(temp), temp, localFile);
+    }
+
+    @Override
+    public boolean delete(String fileKey) {
+        File localFile = getLocalFilePath(fileKey);
+        if (localFile != null && localFile.delete()) {
+            return true;
+        }
+        File previousLocalFile = getPreviousLocalFilePath(fileKey);
+        return previousLocalFile != null && previousLocalFile.delete();
+    }
+
+    /**
+     * 获取本地文件的路径, 不检查文件是否存在
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回本地文件对象, Key 不合法时返回 null
+     */
+    File getLocalFilePath(String fileKey) {
+        File localFileFoloder = getLocalFileFolder(fileKey);
+        return localFileFoloder == null ? null : new File(localFileFoloder, fileKey);
+    }
+
+    /**
+     * 获取本地文件的路径
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回本地文件对象
+     * @throws FileNotFoundException Key 不合法时抛出
+     */
+    private File getExistingLocalFilePath(String fileKey) throws FileNotFoundException {
+        File localFile = getLocalFilePath(fileKey);
+        if (localFile == null) {
+            throw new FileNotFoundException(fileKey);
+        }
+        return localFile;
+    }
+
+    /**
+     * 获取本地文件在迁移前的子目录结构中的路径
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回本地文件对象, 未设置迁移前的子目录结构或 Key 不合法时返回 null
+     */
+    File getPreviousLocalFilePath(String fileKey) {
+        if (LocalFileUploadConfig.previousChildFolderLength <= 0) {
+            return null;
+        }
+        File localFileFoloder = getLocalFileFolder(fileKey, LocalFileUploadConfig.previousChildFolderLength, LocalFileUploadConfig.previousShardLevels);
+        return localFileFoloder == null ? null : new File(localFileFoloder, fileKey);
+    }
+
+    /**
+     * 获取本地文件所在的子目录的名称, 即 Key 中作为各级子目录名称的前缀
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回子目录的名称
+     */
+    private String getShard(String fileKey) {
+        return fileKey.substring(0, LocalFileUploadConfig.childFolderLength * LocalFileUploadConfig.shardLevels);
+    }
+
+    /**
+     * 获取本地文件所在的目录
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回本地文件所在的目录, Key 不合法时返回 null
+     */
+    private File getLocalFileFolder(String fileKey) {
+        return getLocalFileFolder(fileKey, LocalFileUploadConfig.childFolderLength, LocalFileUploadConfig.shardLevels);
+    }
+
+    /**
+     * 获取本地文件在给定的子目录结构中所在的目录
+     *
+     * @param fileKey           表示本地文件的 Key
+     * @param childFolderLength 每级子目录的长度
+     * @param shardLevels       子目录的层级
+     * @return 返回本地文件所在的目录, Key 不合法时返回 null
+     */
+    static File getLocalFileFolder(String fileKey, int childFolderLength, int shardLevels) {
+        if (fileKey == null || fileKey.length() < childFolderLength * shardLevels) {
+            return null;
+        }
+        File localFileFolder = new File(LocalFileUploadConfig.storageRootFolder);
+        for (int i = 0; i < shardLevels; i++) {
+            localFileFolder = new File(localFileFolder, fileKey.substring(i * childFolderLength, (i + 1) * childFolderLength));
+        }
+        return localFileFolder;
+    }
+
+    /**
+     * 写到文件的输出流. 临时文件为 null 时原地写出, 否则写到临时文件, 关闭时替换目标文件
+     */
+    private static class FileOutput extends LocalFileOutputStream {
+
+        /**
+         * 文件的输出流
+         */
+        private final FileOutputStream out;
+
+        /**
+         * 临时文件, 原地写出时为 null
+         */
+        private final File temp;
+
+        /**
+         * 目标文件
+         */
+        private final File target;
+
+        /**
+         * 是否已关闭或已放弃
+         */
+        private boolean closed;
+
+        FileOutput(FileOutputStream out, File temp, File target) {
+            this.out = out;
+            this.temp = temp;
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (temp == null) {
+                out.close();
+                return;
+            }
+            try {
+                out.close();
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temp.delete();
+            }
+        }
+
+        @Override
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                // 放弃写出的内容, 忽略关闭出错
+            }
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+
+    }
+
+}
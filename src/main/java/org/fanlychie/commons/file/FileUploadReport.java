@@ -4,7 +4,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * 文件上传报告
+ * 文件上传报告, 非线程安全. 并行上传时每个文件在各自的线程中写入各自的报告, 全部完成后由调用线程按文件的原始顺序合并,
+ * 反馈的顺序与文件的顺序一致
  * Created by fanlychie on 2017/1/13.
  */
 public class FileUploadReport {
@@ -96,4 +97,16 @@ public class FileUploadReport {
         }
     }
 
+    /**
+     * 合并另一个文件上传报告, 其反馈追加在此报告的反馈之后
+     *
+     * @param report 文件上传报告
+     */
+    void merge(FileUploadReport report) {
+        this.successfulNumber += report.successfulNumber;
+        this.failedNumber += report.failedNumber;
+        this.fileKeys.addAll(report.fileKeys);
+        this.failedMsgs.addAll(report.failedMsgs);
+    }
+
 }
\ No newline at end of file
@@ -7,10 +7,9 @@ import org.fanlychie.commons.file.exception.LocalFileNotFoundException;
 import org.fanlychie.commons.file.exception.RuntimeCastException;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
@@ -18,20 +17,36 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 /**
@@ -58,6 +73,21 @@ public final class FileUtils {
      */
     private static final Map<String, String> DATA_URI_SCHEME_EXTENSION = new HashMap<>();
 
+    /**
+     * 图片的 Data URI Scheme 前缀格式
+     */
+    private static final Pattern DATA_URI_SCHEME_PATTERN = Pattern.compile("data:image/\\w+;base64,");
+
+    /**
+     * 图片的 Data URI Scheme 前缀的最大长度
+     */
+    private static final int DATA_URI_SCHEME_MAX_LENGTH = 64;
+
+    /**
+     * 生成文件 Key 的随机数, 文件 Key 即文件的访问凭证, 不能被猜测
+     */
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     /**
      * mime types
      */
@@ -114,6 +144,84 @@ public final class FileUtils {
         readStreamLineByLine(getInputStream(pathname), consumer);
     }
 
+    /**
+     * 以内存映射的方式逐行读取文件内容, 适用于大文件. 文件须为 UTF-8 编码, 行以 '\n' 分隔
+     *
+     * @param file     读取的文件对象
+     * @param consumer 每行的内容
+     */
+    public static void readFileLineByLineMapped(File file, Consumer<String> consumer) {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            new MappedLineReader(channel, 0, channel.size(), MappedLineReader.WINDOW_SIZE).readLines(consumer);
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    /**
+     * 以内存映射的方式逐行读取文件内容, 适用于大文件. 文件须为 UTF-8 编码, 行以 '\n' 分隔
+     *
+     * @param pathname 读取的文件路径名称
+     * @param consumer 每行的内容
+     */
+    public static void readFileLineByLineMapped(String pathname, Consumer<String> consumer) {
+        readFileLineByLineMapped(new File(pathname), consumer);
+    }
+
+    /**
+     * 以内存映射的方式逐行读取文件内容, 每行解码到一个复用的字符序列, 不为每行创建字符串.
+     * 字符序列仅在回调期间有效, 需要保留时须自行拷贝
+     *
+     * @param file     读取的文件对象
+     * @param consumer 每行的字符内容
+     */
+    public static void readFileLineCharsMapped(File file, Consumer<CharSequence> consumer) {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            new MappedLineReader(channel, 0, channel.size(), MappedLineReader.WINDOW_SIZE).readLineChars(consumer);
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    /**
+     * 以内存映射的方式逐行读取文件内容, 每行以复用的只读字节缓冲区视图交给调用端, 不做任何解码.
+     * 缓冲区视图仅在回调期间有效, 需要保留时须自行拷贝
+     *
+     * @param file     读取的文件对象
+     * @param consumer 每行的字节内容, position 到 limit 之间为行的内容
+     */
+    public static void readFileLineBytesMapped(File file, Consumer<ByteBuffer> consumer) {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            new MappedLineReader(channel, 0, channel.size(), MappedLineReader.WINDOW_SIZE).readLineBytes(consumer);
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    /**
+     * 并行处理文件的每行内容. 文件按换行符对齐切分成若干区间, 在 fork-join 线程池中同时读取, 适用于每行处理开销较大的大文件.
+     * 文件须为 UTF-8 编码, 行的处理顺序不确定
+     *
+     * @param file        读取的文件对象
+     * @param parallelism 并行度, 即同时处理的线程个数
+     * @param consumer    每行的内容, 会被多个线程同时调用, 须是线程安全的
+     */
+    public static void processFileLinesParallel(File file, int parallelism, Consumer<String> consumer) {
+        new ParallelLineProcessor(file, parallelism).process(consumer);
+    }
+
+    /**
+     * 并行处理文件的每行内容. 每行内容的转换并行执行, 转换的结果按行在文件中的顺序依次交给调用端
+     *
+     * @param file        读取的文件对象
+     * @param parallelism 并行度, 即同时处理的线程个数
+     * @param mapper      每行内容的转换, 会被多个线程同时调用, 须是线程安全的
+     * @param consumer    转换的结果, 在调用线程中按行的顺序被调用
+     */
+    public static <R> void processFileLinesParallel(File file, int parallelism, Function<String, R> mapper, Consumer<R> consumer) {
+        new ParallelLineProcessor(file, parallelism).process(mapper, consumer);
+    }
+
     /**
      * 读取文件内容
      *
@@ -247,10 +355,10 @@ public final class FileUtils {
     public static void provideFileDownload(HttpServletResponse response, File file, String fileName) {
         try {
             fileName = new String(fileName.getBytes(CHARSET_UTF8), "ISO-8859-1");
-            response.setContentLength((int) file.length());
+            setContentLength(response, file.length());
             response.setContentType("application/octet-stream; charset=iso-8859-1");
             response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
-            writeInputStreamToOutputStream(getInputStream(file), response.getOutputStream());
+            writeFileToOutputStream(file, response.getOutputStream());
         } catch (IOException e) {
             throw new RuntimeCastException(e);
         }
@@ -266,6 +374,24 @@ public final class FileUtils {
         provideFileDownload(response, file, file.getName());
     }
 
+    /**
+     * 提供文件下载, 支持 Range 请求头的断点续传和分段下载
+     *
+     * @param request  HttpServletRequest
+     * @param response HttpServletResponse
+     * @param file     被下载的文件对象
+     * @param fileName 下载时显示的文件名称
+     */
+    public static void provideFileDownload(HttpServletRequest request, HttpServletResponse response, File file, String fileName) {
+        try {
+            fileName = new String(fileName.getBytes(CHARSET_UTF8), "ISO-8859-1");
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+        response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
+        writeFileToResponse(request, response, file, file.length(), file.lastModified(), "application/octet-stream; charset=iso-8859-1");
+    }
+
     /**
      * 打开 URL 表示的文件
      *
@@ -276,6 +402,16 @@ public final class FileUtils {
         return new URLFile(url);
     }
 
+    /**
+     * 打开一批 URL 表示的文件, 用于并发地批量下载
+     *
+     * @param urls URL 链接列表
+     * @return 返回批量下载对象
+     */
+    public static URLFileBatch openUrlFiles(Collection<String> urls) {
+        return new URLFileBatch(urls);
+    }
+
     /**
      * Base64 编码图片文件
      *
@@ -283,7 +419,56 @@ public final class FileUtils {
      * @return 返回编码的字符串
      */
     public static String encodeImageFileBase64(File src) {
-        return encodeImageStreamBase64(getInputStream(src), getFileExtension(src));
+        String dataUriScheme = getDataUriScheme(getFileExtension(src));
+        // 编码结果的长度可由文件大小精确算出, 直接编码到一个预分配的数组中
+        long size = dataUriScheme.length() + (src.length() + 2) / 3 * 4;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new Base64EncodeImageException("图片文件太大, 无法编码成字符串: " + src);
+        }
+        byte[] data = new byte[(int) size];
+        byte[] prefix = dataUriScheme.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(prefix, 0, data, 0, prefix.length);
+        int[] count = {prefix.length};
+        OutputStream target = new OutputStream() {
+            @Override
+            public void write(int b) {
+                data[count[0]++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                System.arraycopy(b, off, data, count[0], len);
+                count[0] += len;
+            }
+        };
+        try (InputStream in = getInputStream(src);
+             OutputStream encoder = Base64.getEncoder().wrap(target)) {
+            copyStream(in, encoder);
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            // 文件在编码过程中被改写
+            throw new RuntimeCastException(e);
+        }
+        return new String(data, 0, count[0], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Base64 编码图片文件, 编码的内容直接写出到输出流, 输出流不会被关闭
+     *
+     * @param src          图片文件
+     * @param outputStream 编码内容的输出流
+     */
+    public static void encodeImageFileBase64(File src, OutputStream outputStream) {
+        encodeImageStreamBase64(getInputStream(src), getFileExtension(src), outputStream);
+    }
+
+    /**
+     * Base64 编码图片文件, 编码的内容直接写出到字符流, 字符流不会被关闭
+     *
+     * @param src    图片文件
+     * @param writer 编码内容的字符流
+     */
+    public static void encodeImageFileBase64(File src, Writer writer) {
+        encodeImageStreamBase64(getInputStream(src), getFileExtension(src), new WriterOutputStream(writer));
     }
 
     /**
@@ -306,6 +491,26 @@ public final class FileUtils {
         return encodeImageStreamBase64(new URLFile(url).getInputStream(), getUrlFileExtension(url));
     }
 
+    /**
+     * Base64 编码 URL 图片, 编码的内容直接写出到输出流, 输出流不会被关闭
+     *
+     * @param url          URL 链接的图片地址
+     * @param outputStream 编码内容的输出流
+     */
+    public static void encodeImageUrlBase64(String url, OutputStream outputStream) {
+        encodeImageStreamBase64(new URLFile(url).getInputStream(), getUrlFileExtension(url), outputStream);
+    }
+
+    /**
+     * Base64 编码 URL 图片, 编码的内容直接写出到字符流, 字符流不会被关闭
+     *
+     * @param url    URL 链接的图片地址
+     * @param writer 编码内容的字符流
+     */
+    public static void encodeImageUrlBase64(String url, Writer writer) {
+        encodeImageStreamBase64(new URLFile(url).getInputStream(), getUrlFileExtension(url), new WriterOutputStream(writer));
+    }
+
     /**
      * Base64 解码图片字符串
      *
@@ -315,31 +520,52 @@ public final class FileUtils {
      * @return 返回图片的文件对象
      */
     public static File decodeBase64ImageStrToDirectory(File dir, String fileName, String base64ImageStr) {
+        return decodeBase64ImageStreamToDirectory(dir, fileName, new ReaderInputStream(new StringReader(base64ImageStr)));
+    }
+
+    /**
+     * Base64 解码图片字符流, 边读取边解码写出到文件, 内容不会整体加载到内存
+     *
+     * @param dir      目标目录
+     * @param fileName 图片存储的文件名称, eg: img.jpg. 若为 null, 则生成一个随机串作为文件名称
+     * @param reader   Base64 编码的图片内容字符流
+     * @return 返回图片的文件对象
+     */
+    public static File decodeBase64ImageReaderToDirectory(File dir, String fileName, Reader reader) {
+        return decodeBase64ImageStreamToDirectory(dir, fileName, new ReaderInputStream(reader));
+    }
+
+    /**
+     * Base64 解码图片输入流, 边读取边解码写出到文件, 内容不会整体加载到内存
+     *
+     * @param dir         目标目录
+     * @param fileName    图片存储的文件名称, eg: img.jpg. 若为 null, 则生成一个随机串作为文件名称
+     * @param inputStream Base64 编码的图片内容输入流
+     * @return 返回图片的文件对象
+     */
+    public static File decodeBase64ImageStreamToDirectory(File dir, String fileName, InputStream inputStream) {
         if (!dir.isDirectory()) {
             throw new Base64DecodeImageException("\"" + dir + "\" 不是一个有效的目录");
         }
-        Pattern pattern = Pattern.compile("(data:image/\\w+;base64,)(\\S+)");
-        Matcher matcher = pattern.matcher(base64ImageStr);
-        if (fileName == null) {
-            String scheme = matcher.replaceAll("$1");
-            String extension = DATA_URI_SCHEME_EXTENSION.get(scheme);
-            if (extension == null) {
-                throw new Base64DecodeImageException("不支持使用 Base64 解码的图片内容: " + base64ImageStr);
+        File dest = null;
+        try (PushbackInputStream in = new PushbackInputStream(inputStream, DATA_URI_SCHEME_MAX_LENGTH)) {
+            String scheme = readDataUriScheme(in);
+            if (fileName == null) {
+                String extension = scheme == null ? null : DATA_URI_SCHEME_EXTENSION.get(scheme);
+                if (extension == null) {
+                    throw new Base64DecodeImageException("不支持使用 Base64 解码的图片内容: " + (scheme == null ? "缺少 Data URI Scheme" : scheme));
+                }
+                fileName = UUID.randomUUID().toString().replace("-", "") + "." + extension;
             }
-            fileName = UUID.randomUUID().toString().replace("-", "") + "." + extension;
-        }
-        File dest = new File(dir, fileName);
-        base64ImageStr = matcher.replaceAll("$2");
-        byte[] data = Base64.getDecoder().decode(base64ImageStr.getBytes());
-        for (int i = 0; i < data.length; i++) {
-            if (data[i] < 0) {
-                data[i] += 256;
+            dest = new File(dir, fileName);
+            try (InputStream decoder = Base64.getDecoder().wrap(in);
+                 OutputStream os = getOutputStream(dest)) {
+                copyStream(decoder, os);
             }
-        }
-        try (BufferedOutputStream os = new BufferedOutputStream(getOutputStream(dest))) {
-            os.write(data);
-            os.flush();
         } catch (IOException e) {
+            if (dest != null) {
+                dest.delete();
+            }
             throw new RuntimeCastException(e);
         }
         return dest;
@@ -447,14 +673,17 @@ public final class FileUtils {
      * @return 返回本地文件对象
      */
     public static LocalFile createLocalFile(String extension) {
-        String fileKey = null;
-        do {
-            fileKey = UUID.randomUUID().toString().replace("-", "");
-        } while (getLocalFile(fileKey) != null);
-        if (extension != null && !extension.isEmpty()) {
-            fileKey += "." + extension;
+        while (true) {
+            String fileKey = LocalFileUploadConfig.timeOrderedFileKey ? newTimeOrderedFileKey() : UUID.randomUUID().toString().replace("-", "");
+            if (extension != null && !extension.isEmpty()) {
+                fileKey += "." + extension;
+            }
+            try {
+                return createLocalFileExclusively(fileKey);
+            } catch (FileAlreadyExistsException e) {
+                // Key 冲突, 重新生成
+            }
         }
-        return newLocalFile(fileKey);
     }
 
     /**
@@ -464,20 +693,11 @@ public final class FileUtils {
      * @return 返回本地文件对象
      */
     public static LocalFile newLocalFile(String fileName) {
-        File localFileFoloder = getLocalFileFolder(fileName);
-        if (!localFileFoloder.exists()) {
-            localFileFoloder.mkdirs();
-        }
-        File localFile = new File(localFileFoloder, fileName);
-        if (localFile.exists()) {
-            throw new LocalFileCreateException("文件已经存在: " + fileName);
-        }
         try {
-            localFile.createNewFile();
-        } catch (IOException e) {
-            throw new RuntimeCastException(e);
+            return createLocalFileExclusively(fileName);
+        } catch (FileAlreadyExistsException e) {
+            throw new LocalFileCreateException("文件已经存在: " + fileName);
         }
-        return new LocalFile(fileName, localFile);
     }
 
     /**
@@ -487,14 +707,111 @@ public final class FileUtils {
      * @return 返回 KEY 表示的本地文件
      */
     public static File getLocalFile(String fileKey) {
-        File localFileFoloder = getLocalFileFolder(fileKey);
-        if (localFileFoloder != null && localFileFoloder.isDirectory()) {
-            File localFile = new File(localFileFoloder, fileKey);
-            if (localFile.isFile()) {
-                return localFile;
+        LocalFileMetadata metadata = getLocalFileMetadata(fileKey);
+        return metadata == null ? null : metadata.getFile();
+    }
+
+    /**
+     * 获取本地文件的元数据, 优先从元数据缓存中获取
+     *
+     * @param fileKey 文件存储 KEY
+     * @return 返回 KEY 表示的本地文件的元数据, 文件不存在时返回 null
+     */
+    public static LocalFileMetadata getLocalFileMetadata(String fileKey) {
+        LocalFileMetadata metadata = LocalFileMetadataCache.get(fileKey);
+        if (metadata != null) {
+            return metadata;
+        }
+        metadata = LocalFileUploadConfig.storage.getMetadata(fileKey);
+        if (metadata != null) {
+            LocalFileMetadataCache.put(metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * 删除本地文件
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 删除成功时返回 true, 文件不存在时返回 false
+     */
+    public static boolean deleteLocalFile(String fileKey) {
+        boolean deleted = LocalFileUploadConfig.storage.delete(fileKey);
+        LocalFileMetadataCache.invalidate(fileKey);
+        return deleted;
+    }
+
+    /**
+     * 提供本地文件下载, 支持 Range 请求头的断点续传和分段下载
+     *
+     * @param request  HttpServletRequest
+     * @param response HttpServletResponse
+     * @param fileKey  表示本地文件的 Key
+     * @param fileName 下载时显示的文件名称
+     */
+    public static void provideLocalFileDownload(HttpServletRequest request, HttpServletResponse response, String fileKey, String fileName) {
+        LocalFileMetadata metadata = getLocalFileMetadata(fileKey);
+        if (metadata == null) {
+            throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
+        }
+        try {
+            fileName = new String(fileName.getBytes(CHARSET_UTF8), "ISO-8859-1");
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+        response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
+        writeLocalFileToResponse(request, response, metadata, "application/octet-stream; charset=iso-8859-1");
+    }
+
+    /**
+     * 以 Servlet 3.1 非阻塞 I/O 的方式异步提供本地文件下载, 支持 Range 请求头的断点续传和分段下载.
+     * 文件内容只在输出流就绪时写出, 方法在开始异步处理后立即返回, 慢速的客户端不占用请求线程
+     *
+     * @param request  HttpServletRequest, 必须支持异步处理
+     * @param response HttpServletResponse
+     * @param fileKey  表示本地文件的 Key
+     * @param fileName 下载时显示的文件名称
+     * @param timeout  异步处理的超时时间, 单位(毫秒), 0 表示不超时
+     */
+    public static void provideLocalFileDownloadAsync(HttpServletRequest request, HttpServletResponse response, String fileKey, String fileName, long timeout) {
+        LocalFileMetadata metadata = getLocalFileMetadata(fileKey);
+        if (metadata == null) {
+            throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
+        }
+        SeekableByteChannel in;
+        try {
+            in = LocalFileUploadConfig.storage.openReadChannel(fileKey);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // 缓存的元数据已过时, 文件已被删除
+            LocalFileMetadataCache.invalidate(fileKey);
+            throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+        try {
+            response.setHeader("Content-Disposition", "attachment; filename=" + new String(fileName.getBytes(CHARSET_UTF8), "ISO-8859-1"));
+            List<ResponsePart> parts = prepareResponse(request, response, metadata.getLength(), metadata.getLastModified(),
+                    "application/octet-stream; charset=iso-8859-1");
+            if (parts == null) {
+                in.close();
+                return;
+            }
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(timeout);
+            AsyncResponseWriter writer = new AsyncResponseWriter(asyncContext, in, response.getOutputStream(), parts);
+            asyncContext.addListener(writer);
+            response.getOutputStream().setWriteListener(writer);
+        } catch (IOException | RuntimeException e) {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                // 忽略
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
             }
+            throw new RuntimeCastException(e);
         }
-        return null;
     }
 
     /**
@@ -504,17 +821,62 @@ public final class FileUtils {
      * @param fileKey  表示本地文件的 Key
      */
     public static void accessLocalFile(HttpServletResponse response, String fileKey) {
-        File file = getLocalFile(fileKey);
-        if (file == null) {
+        LocalFileMetadata metadata = getLocalFileMetadata(fileKey);
+        if (metadata == null) {
             throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
         }
-        response.setContentLength((int) file.length());
-        response.setContentType(MIME_TYPES.getOrDefault(getFileExtension(file), "application/octet-stream"));
-        try {
-            writeInputStreamToOutputStream(getInputStream(file), response.getOutputStream());
+        setContentLength(response, metadata.getLength());
+        response.setContentType(metadata.getContentType());
+        try (SeekableByteChannel in = LocalFileUploadConfig.storage.openReadChannel(fileKey)) {
+            OutputStream outputStream = response.getOutputStream();
+            writeChannelToChannel(in, 0, metadata.getLength(), Channels.newChannel(outputStream));
+            outputStream.flush();
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // 缓存的元数据已过时, 文件已被删除
+            LocalFileMetadataCache.invalidate(fileKey);
+            throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
         } catch (IOException e) {
-            throw new RuntimeCastException(e);
+            // 隐藏客户端强制退出时抛出的异常
+            if (!e.getClass().getSimpleName().equals("ClientAbortException")) {
+                throw new RuntimeCastException(e);
+            }
+        }
+    }
+
+    /**
+     * 访问本地文件, 响应到客户端, 支持 Range 请求头的分段访问
+     *
+     * @param request  HttpServletRequest
+     * @param response HttpServletResponse
+     * @param fileKey  表示本地文件的 Key
+     */
+    public static void accessLocalFile(HttpServletRequest request, HttpServletResponse response, String fileKey) {
+        LocalFileMetadata metadata = getLocalFileMetadata(fileKey);
+        if (metadata == null) {
+            throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
         }
+        writeLocalFileToResponse(request, response, metadata, metadata.getContentType());
+    }
+
+    /**
+     * 获取文件的实体标签, 由文件大小和最后修改时间计算得出
+     *
+     * @param file 文件对象
+     * @return 返回 ETag 响应头的值, eg: "5d2-15a8b3c4e10" (含双引号)
+     */
+    public static String getFileETag(File file) {
+        return getFileETag(file.length(), file.lastModified());
+    }
+
+    /**
+     * 获取文件的实体标签
+     *
+     * @param length       文件大小, 单位(B)
+     * @param lastModified 文件的最后修改时间
+     * @return 返回 ETag 响应头的值
+     */
+    static String getFileETag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
     }
 
     /**
@@ -726,13 +1088,32 @@ public final class FileUtils {
      * @param outputStream 输出流
      */
     static void writeInputStreamToOutputStream(InputStream inputStream, OutputStream outputStream) {
-        try (BufferedInputStream bis = new BufferedInputStream(inputStream);
-             BufferedOutputStream bos = new BufferedOutputStream(outputStream)) {
-            int read;
-            byte[] buffer = new byte[512 * 1024];
-            while ((read = bis.read(buffer)) != -1) {
-                bos.write(buffer, 0, read);
+        // 两端均为文件时, 交由内核完成拷贝
+        if (inputStream instanceof FileInputStream && outputStream instanceof FileOutputStream) {
+            writeFileChannelToFileChannel((FileInputStream) inputStream, (FileOutputStream) outputStream);
+            return;
+        }
+        try (InputStream in = inputStream;
+             OutputStream out = outputStream) {
+            copyStream(in, out);
+        } catch (IOException e) {
+            // 隐藏客户端强制退出时抛出的异常
+            if (!e.getClass().getSimpleName().equals("ClientAbortException")) {
+                throw new RuntimeCastException(e);
             }
+        }
+    }
+
+    /**
+     * 将文件写到输出流, 经由文件通道读取到缓冲区池的直接缓冲区后写出
+     *
+     * @param file         源文件
+     * @param outputStream 输出流
+     */
+    static void writeFileToOutputStream(File file, OutputStream outputStream) {
+        try (FileChannel in = new FileInputStream(file).getChannel()) {
+            writeChannelToChannel(in, 0, in.size(), Channels.newChannel(outputStream));
+            outputStream.flush();
         } catch (IOException e) {
             // 隐藏客户端强制退出时抛出的异常
             if (!e.getClass().getSimpleName().equals("ClientAbortException")) {
@@ -741,6 +1122,236 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 将文件响应到客户端. 请求头含 Range 时, 按区间响应 206 或 416 状态码, 多个区间时响应 multipart/byteranges 内容
+     *
+     * @param request      HttpServletRequest
+     * @param response     HttpServletResponse
+     * @param file         源文件
+     * @param length       文件大小, 单位(B)
+     * @param lastModified 文件的最后修改时间
+     * @param contentType  文件的内容类型
+     */
+    static void writeFileToResponse(HttpServletRequest request, HttpServletResponse response, File file, long length, long lastModified, String contentType) {
+        try (FileChannel in = new FileInputStream(file).getChannel()) {
+            writeChannelToResponse(request, response, in, length, lastModified, contentType);
+        } catch (IOException e) {
+            // 隐藏客户端强制退出时抛出的异常
+            if (!e.getClass().getSimpleName().equals("ClientAbortException")) {
+                throw new RuntimeCastException(e);
+            }
+        }
+    }
+
+    /**
+     * 将本地文件响应到客户端, 经由 {@link LocalFileUploadConfig#storage} 读取文件内容
+     *
+     * @param request     HttpServletRequest
+     * @param response    HttpServletResponse
+     * @param metadata    本地文件的元数据
+     * @param contentType 响应的内容类型
+     */
+    static void writeLocalFileToResponse(HttpServletRequest request, HttpServletResponse response, LocalFileMetadata metadata, String contentType) {
+        try (SeekableByteChannel in = LocalFileUploadConfig.storage.openReadChannel(metadata.getKey())) {
+            writeChannelToResponse(request, response, in, metadata.getLength(), metadata.getLastModified(), contentType);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // 缓存的元数据已过时, 文件已被删除
+            LocalFileMetadataCache.invalidate(metadata.getKey());
+            throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + metadata.getKey());
+        } catch (IOException e) {
+            // 隐藏客户端强制退出时抛出的异常
+            if (!e.getClass().getSimpleName().equals("ClientAbortException")) {
+                throw new RuntimeCastException(e);
+            }
+        }
+    }
+
+    /**
+     * 将通道的内容响应到客户端. 请求头含 Range 时, 按区间响应 206 或 416 状态码, 多个区间时响应 multipart/byteranges 内容
+     *
+     * @param request      HttpServletRequest
+     * @param response     HttpServletResponse
+     * @param in           可定位的读取通道
+     * @param length       内容大小, 单位(B)
+     * @param lastModified 内容的最后修改时间
+     * @param contentType  内容类型
+     * @throws IOException
+     */
+    private static void writeChannelToResponse(HttpServletRequest request, HttpServletResponse response, SeekableByteChannel in,
+                                               long length, long lastModified, String contentType) throws IOException {
+        List<ResponsePart> parts = prepareResponse(request, response, length, lastModified, contentType);
+        if (parts == null) {
+            return;
+        }
+        OutputStream outputStream = response.getOutputStream();
+        WritableByteChannel out = Channels.newChannel(outputStream);
+        for (ResponsePart part : parts) {
+            if (part.getHeader() != null) {
+                outputStream.write(part.getHeader());
+            }
+            if (part.getLength() > 0) {
+                writeChannelToChannel(in, part.getStart(), part.getLength(), out);
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * 设置响应的状态码和响应头, 并计算需要响应的内容. 请求头含 Range 时, 按区间响应 206 或 416 状态码,
+     * 多个区间时响应 multipart/byteranges 内容
+     *
+     * @param request      HttpServletRequest
+     * @param response     HttpServletResponse
+     * @param length       内容大小, 单位(B)
+     * @param lastModified 内容的最后修改时间
+     * @param contentType  内容类型
+     * @return 返回依次响应的内容片段, 响应 416 状态码时返回 null
+     * @throws IOException
+     */
+    static List<ResponsePart> prepareResponse(HttpServletRequest request, HttpServletResponse response,
+                                              long length, long lastModified, String contentType) throws IOException {
+        String eTag = getFileETag(length, lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", eTag);
+        response.setDateHeader("Last-Modified", lastModified);
+        List<HttpRange> ranges = null;
+        String rangeHeader = request.getHeader("Range");
+        if (rangeHeader != null && isIfRangeMatched(request, eTag, lastModified)) {
+            ranges = HttpRange.parse(rangeHeader, length);
+        }
+        if (ranges != null && ranges.isEmpty()) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
+        }
+        List<ResponsePart> parts = new ArrayList<>();
+        if (ranges == null) {
+            setContentLength(response, length);
+            response.setContentType(contentType);
+            parts.add(new ResponsePart(null, 0, length));
+        } else if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", range.toContentRange(length));
+            setContentLength(response, range.getLength());
+            response.setContentType(contentType);
+            parts.add(new ResponsePart(null, range.getStart(), range.getLength()));
+        } else {
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            long contentLength = 0;
+            for (HttpRange range : ranges) {
+                byte[] partHeader = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\nContent-Range: "
+                        + range.toContentRange(length) + "\r\n\r\n").getBytes("ISO-8859-1");
+                parts.add(new ResponsePart(partHeader, range.getStart(), range.getLength()));
+                contentLength += partHeader.length + range.getLength();
+            }
+            byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes("ISO-8859-1");
+            parts.add(new ResponsePart(closeDelimiter, 0, 0));
+            contentLength += closeDelimiter.length;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            setContentLength(response, contentLength);
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+        }
+        return parts;
+    }
+
+    /**
+     * 以定位读取的方式将通道的指定区间写到目标通道, 使用缓冲区池的直接缓冲区.
+     * 文件通道使用不改变通道位置的定位读取, 其它通道先定位再顺序读取
+     *
+     * @param in       可定位的读取通道
+     * @param position 起始位置
+     * @param count    写出的字节数
+     * @param out      目标通道
+     * @throws IOException
+     */
+    private static void writeChannelToChannel(SeekableByteChannel in, long position, long count, WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = BufferPool.acquireDirect();
+        try {
+            FileChannel fileChannel = in instanceof FileChannel ? (FileChannel) in : null;
+            if (fileChannel == null) {
+                in.position(position);
+            }
+            long end = position + count;
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) {
+                    buffer.limit((int) (end - position));
+                }
+                int read = fileChannel != null ? fileChannel.read(buffer, position) : in.read(buffer);
+                if (read == -1) {
+                    break;
+                }
+                position += read;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 判断 If-Range 请求头是否与文件当前的版本匹配
+     *
+     * @param request      HttpServletRequest
+     * @param eTag         文件的实体标签
+     * @param lastModified 文件的最后修改时间
+     * @return 没有 If-Range 请求头或匹配时返回 true, 此时可以按 Range 响应
+     */
+    private static boolean isIfRangeMatched(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            long date = request.getDateHeader("If-Range");
+            return date != -1 && lastModified / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 设置响应内容的长度, 支持超过 2G 的文件
+     *
+     * @param response HttpServletResponse
+     * @param length   内容长度, 单位(B)
+     */
+    static void setContentLength(HttpServletResponse response, long length) {
+        response.setContentLengthLong(length);
+    }
+
+    /**
+     * 将文件输入流写到文件输出流, 使用 {@link FileChannel#transferTo} 零拷贝传输
+     *
+     * @param inputStream  文件输入流
+     * @param outputStream 文件输出流
+     */
+    static void writeFileChannelToFileChannel(FileInputStream inputStream, FileOutputStream outputStream) {
+        try (FileChannel in = inputStream.getChannel();
+             FileChannel out = outputStream.getChannel()) {
+            long position = in.position();
+            long size = in.size();
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                // 源文件在拷贝过程中被截断
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
     /**
      * 写文件
      *
@@ -765,35 +1376,152 @@ public final class FileUtils {
      * @return 返回编码的字符串
      */
     private static String encodeImageStreamBase64(InputStream inputStream, String extension) {
+        String dataUriScheme = getDataUriScheme(extension);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InputStream in = inputStream;
+             OutputStream encoder = Base64.getEncoder().wrap(baos)) {
+            copyStream(in, encoder);
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+        try {
+            return dataUriScheme + baos.toString("ISO-8859-1");
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    /**
+     * Base64 编码图片输入流, 编码的内容直接写出到输出流
+     *
+     * @param inputStream  InputStream
+     * @param extension    图片文件的扩展名
+     * @param outputStream 编码内容的输出流, 不会被关闭
+     */
+    private static void encodeImageStreamBase64(InputStream inputStream, String extension, OutputStream outputStream) {
+        String dataUriScheme = getDataUriScheme(extension);
+        // 关闭编码流时需写出末尾的填充字符, 但不能关闭调用端的输出流
+        OutputStream target = new FilterOutputStream(outputStream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        try (InputStream in = inputStream) {
+            target.write(dataUriScheme.getBytes("ISO-8859-1"));
+            try (OutputStream encoder = Base64.getEncoder().wrap(target)) {
+                copyStream(in, encoder);
+            }
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    /**
+     * 使用缓冲区池中的缓冲区将输入流写到输出流, 不关闭流
+     *
+     * @param in  输入流
+     * @param out 输出流
+     * @throws IOException
+     */
+    static void copyStream(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = BufferPool.acquireArray();
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 获取图片扩展名对应的 Data URI Scheme
+     *
+     * @param extension 图片文件的扩展名
+     * @return eg: "data:image/png;base64,"
+     */
+    private static String getDataUriScheme(String extension) {
         String dataUriScheme = EXTENSION_DATA_URI_SCHEME.get(extension.toLowerCase());
         if (dataUriScheme == null) {
             throw new Base64EncodeImageException("不支持使用 Base64 编码的图片类型: " + extension);
         }
-        try (BufferedInputStream bis = new BufferedInputStream(inputStream);
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            int read;
-            byte[] buffer = new byte[512 * 1024];
-            while ((read = bis.read(buffer)) != -1) {
-                baos.write(buffer, 0, read);
+        return dataUriScheme;
+    }
+
+    /**
+     * 读取 Data URI Scheme 前缀, eg: "data:image/png;base64,"
+     *
+     * @param in 可回退的输入流
+     * @return 返回读取到的前缀, 不存在前缀时返回 null, 并将已读取的内容回退到流中
+     * @throws IOException
+     */
+    private static String readDataUriScheme(PushbackInputStream in) throws IOException {
+        byte[] prefix = new byte[DATA_URI_SCHEME_MAX_LENGTH];
+        int length = 0;
+        int read;
+        while (length < prefix.length && (read = in.read()) != -1) {
+            prefix[length++] = (byte) read;
+            if (read == ',') {
+                String scheme = new String(prefix, 0, length, "ISO-8859-1");
+                if (DATA_URI_SCHEME_PATTERN.matcher(scheme).matches()) {
+                    return scheme;
+                }
+                break;
             }
-            return dataUriScheme + new String(Base64.getEncoder().encode(baos.toByteArray()));
-        } catch (IOException e) {
-            throw new RuntimeCastException(e);
         }
+        in.unread(prefix, 0, length);
+        return null;
     }
 
     /**
-     * 获取本地文件所在的目录
+     * 根据文件名称的扩展名获取文件的内容类型
      *
-     * @param fileKey 表示本地文件的 Key
-     * @return 返回本地文件所在的目录
+     * @param fileName 文件名称
+     * @return 返回内容类型, 未知的扩展名返回 application/octet-stream
      */
-    private static File getLocalFileFolder(String fileKey) {
-        if (fileKey == null && fileKey.length() < LocalFileUploadConfig.childFolderLength) {
-            return null;
+    public static String getContentType(String fileName) {
+        return MIME_TYPES.getOrDefault(getFileExtension(fileName), "application/octet-stream");
+    }
+
+    /**
+     * 以原子的方式在 {@link LocalFileUploadConfig#storage} 中新建本地文件, 文件已存在时失败
+     *
+     * @param fileName 本地文件名称
+     * @return 返回本地文件对象
+     * @throws FileAlreadyExistsException 文件已经存在时抛出
+     */
+    private static LocalFile createLocalFileExclusively(String fileName) throws FileAlreadyExistsException {
+        LocalFile localFile = LocalFileUploadConfig.storage.create(fileName);
+        LocalFileMetadataCache.invalidate(fileName);
+        return localFile;
+    }
+
+    /**
+     * 生成按时间排序的文件 Key, 由 48 位毫秒时间戳和 80 位随机数组成的 32 位十六进制字符串.
+     * Key 的前缀即时间戳的高位, 新文件集中在最近的子目录中
+     *
+     * @return 返回文件 Key
+     */
+    private static String newTimeOrderedFileKey() {
+        byte[] random = new byte[10];
+        SECURE_RANDOM.nextBytes(random);
+        StringBuilder builder = new StringBuilder(32);
+        String timestamp = Long.toHexString(System.currentTimeMillis() & 0xFFFFFFFFFFFFL);
+        for (int i = timestamp.length(); i < 12; i++) {
+            builder.append('0');
+        }
+        builder.append(timestamp);
+        for (byte b : random) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
         }
-        String localFileChildFolderName = fileKey.substring(0, LocalFileUploadConfig.childFolderLength);
-        return new File(LocalFileUploadConfig.storageRootFolder, localFileChildFolderName);
+        return builder.toString();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package org.fanlychie.commons.file;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * HTTP 请求头 Range 表示的字节区间
+ * Created by fanlychie on 2026/10/17.
+ */
+class HttpRange {
+
+    /**
+     * 单个请求允许的最大区间个数, 超出时忽略 Range 请求头
+     */
+    private static final int MAX_RANGES = 32;
+
+    /**
+     * 起始位置(包含)
+     */
+    private final long start;
+
+    /**
+     * 结束位置(包含)
+     */
+    private final long end;
+
+    /**
+     * 创建一个字节区间
+     *
+     * @param start 起始位置(包含)
+     * @param end   结束位置(包含)
+     */
+    HttpRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * 获取起始位置
+     *
+     * @return 返回起始位置(包含)
+     */
+    long getStart() {
+        return start;
+    }
+
+    /**
+     * 获取结束位置
+     *
+     * @return 返回结束位置(包含)
+     */
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * 获取区间的字节长度
+     *
+     * @return 返回区间的字节长度
+     */
+    long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * 获取 Content-Range 响应头的值
+     *
+     * @param total 文件总长度
+     * @return eg: "bytes 0-499/1234"
+     */
+    String toContentRange(long total) {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+
+    /**
+     * 解析 Range 请求头, 重叠或相邻的区间会被合并
+     *
+     * @param header Range 请求头的值, eg: "bytes=0-499,1000-"
+     * @param length 文件长度
+     * @return 语法不合法时返回 null, 表示忽略此请求头; 全部区间都无法满足时返回空列表
+     */
+    static List<HttpRange> parse(String header, long length) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<HttpRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int index = spec.indexOf('-');
+            if (index == -1) {
+                return null;
+            }
+            String first = spec.substring(0, index).trim();
+            String last = spec.substring(index + 1).trim();
+            long start, end;
+            try {
+                if (first.isEmpty()) {
+                    // 后缀区间, eg: "-500" 表示最后 500 个字节
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start < length) {
+                ranges.add(new HttpRange(start, end));
+            }
+        }
+        return merge(ranges);
+    }
+
+    /**
+     * 合并重叠或相邻的区间
+     *
+     * @param ranges 区间列表
+     * @return 返回按起始位置排序且互不相交的区间列表
+     */
+    private static List<HttpRange> merge(List<HttpRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(HttpRange::getStart));
+        List<HttpRange> merged = new ArrayList<>();
+        HttpRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            HttpRange next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new HttpRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+}
@@ -1,6 +1,9 @@
 package org.fanlychie.commons.file;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 
 /**
  * 本地文件
@@ -18,19 +21,94 @@ public class LocalFile {
      */
     private String key;
 
+    /**
+     * 文件所在的存储
+     */
+    private LocalFileStorage storage;
+
     /**
      * 创建一个本地文件对象
      *
-     * @param key  表示本地文件的 Key
-     * @param file 本地文件对象
+     * @param key     表示本地文件的 Key
+     * @param file    本地文件对象, 存储不基于文件系统时为 null
+     * @param storage 文件所在的存储
      */
-    LocalFile(String key, File file) {
+    public LocalFile(String key, File file, LocalFileStorage storage) {
         this.key = key;
         this.file = file;
+        this.storage = storage;
+    }
+
+    /**
+     * 打开文件的输出流, 写出的内容覆盖文件原有的内容. 写出出错时自动放弃已写出的内容, 此后关闭不再提交.
+     * 关闭或放弃时清除文件在元数据缓存中的条目, 此后的访问读取到新的大小、ETag 和最后修改时间
+     *
+     * @return 返回输出流
+     * @throws IOException 文件不存在或写出出错时抛出
+     */
+    public LocalFileOutputStream openOutputStream() throws IOException {
+        LocalFileOutputStream out = storage.openOutputStream(key);
+        return new LocalFileOutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    out.write(b);
+                } catch (IOException | RuntimeException e) {
+                    abort();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    out.write(b, off, len);
+                } catch (IOException | RuntimeException e) {
+                    abort();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    out.close();
+                } finally {
+                    LocalFileMetadataCache.invalidate(key);
+                }
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    out.abort();
+                } finally {
+                    LocalFileMetadataCache.invalidate(key);
+                }
+            }
+
+        };
+    }
+
+    /**
+     * 打开文件的输入流
+     *
+     * @return 返回输入流
+     * @throws IOException 文件不存在或读取出错时抛出
+     */
+    public InputStream openInputStream() throws IOException {
+        return Channels.newInputStream(storage.openReadChannel(key));
     }
 
     /**
-     * 获取本地文件
+     * 获取本地文件, 存储不基于文件系统时(如 {@link MemoryLocalFileStorage})返回 null,
+     * 此时通过 {@link #openInputStream()} 和 {@link #openOutputStream()} 读写文件
      *
      * @return 返回本地文件对象
      */
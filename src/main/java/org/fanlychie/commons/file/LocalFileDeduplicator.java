@@ -0,0 +1,166 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地文件去重. 内容相同的文件以硬链接的方式只保存一份, 存储根目录下的 .dedup 目录中以 SHA-256 摘要命名的文件为规范副本,
+ * 每个上传的文件 Key 都是指向规范副本的硬链接, 文件的链接数即引用计数, 删除任意一个 Key 不影响其它 Key.
+ * 去重后的文件共享同一份内容, {@link LocalFile#openOutputStream()} 以替换文件的方式改写, 只断开被改写的 Key 的链接,
+ * 不能通过 {@link LocalFile#getFile()} 原地改写
+ * Created by fanlychie on 2026/10/17.
+ */
+public final class LocalFileDeduplicator {
+
+    /**
+     * 规范副本存放的目录名称
+     */
+    private static final String DEDUP_FOLDER = ".dedup";
+
+    /**
+     * 去重的文件个数
+     */
+    private static final LongAdder DEDUPLICATED_COUNT = new LongAdder();
+
+    /**
+     * 去重节省的空间, 单位(B)
+     */
+    private static final LongAdder DEDUPLICATED_BYTES = new LongAdder();
+
+    // 私有
+    private LocalFileDeduplicator() {
+
+    }
+
+    /**
+     * 清理不再被引用的规范副本, 即链接数为 1 的规范副本. 文件系统不支持查询链接数时不清理
+     *
+     * @return 返回清理的规范副本个数
+     */
+    public static int purge() {
+        File root = new File(LocalFileUploadConfig.storageRootFolder, DEDUP_FOLDER);
+        File[] folders = root.listFiles(File::isDirectory);
+        if (folders == null) {
+            return 0;
+        }
+        int purged = 0;
+        try {
+            for (File folder : folders) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+                    for (Path canonical : stream) {
+                        if (((Number) Files.getAttribute(canonical, "unix:nlink")).intValue() == 1 && Files.deleteIfExists(canonical)) {
+                            purged++;
+                        }
+                    }
+                }
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // 文件系统不支持查询链接数
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+        return purged;
+    }
+
+    /**
+     * 获取去重的文件个数
+     *
+     * @return 返回内容与已有文件相同而被替换为硬链接的文件个数
+     */
+    public static long getDeduplicatedCount() {
+        return DEDUPLICATED_COUNT.sum();
+    }
+
+    /**
+     * 获取去重节省的空间
+     *
+     * @return 返回节省的空间, 单位(B)
+     */
+    public static long getDeduplicatedBytes() {
+        return DEDUPLICATED_BYTES.sum();
+    }
+
+    /**
+     * 创建计算 SHA-256 摘要的对象
+     *
+     * @return 返回 MessageDigest
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    /**
+     * 对已写入内容的本地文件去重. 内容首次出现时将文件链接为规范副本, 否则以指向规范副本的硬链接替换文件.
+     * 存储不基于文件系统时不去重
+     *
+     * @param localFile 本地文件对象
+     * @param digest    文件内容的 SHA-256 摘要
+     */
+    static void deduplicate(LocalFile localFile, byte[] digest) {
+        File file = localFile.getFile();
+        if (file == null) {
+            return;
+        }
+        StringBuilder name = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        Path folder = new File(new File(LocalFileUploadConfig.storageRootFolder, DEDUP_FOLDER), name.substring(0, 2)).toPath();
+        Path canonical = folder.resolve(name.toString());
+        Path path = file.toPath();
+        try {
+            while (true) {
+                try {
+                    Files.createLink(canonical, path);
+                    return;
+                } catch (NoSuchFileException e) {
+                    Files.createDirectories(folder);
+                    continue;
+                } catch (FileAlreadyExistsException e) {
+                    // 内容已经存在
+                }
+                long length = Files.size(path);
+                try {
+                    if (Files.size(canonical) != length || Files.isSameFile(canonical, path)) {
+                        return;
+                    }
+                } catch (NoSuchFileException e) {
+                    // 规范副本刚被清理, 重新链接
+                    continue;
+                }
+                Path link = path.resolveSibling(FileSystemLocalFileStorage.HIDDEN_PREFIX + path.getFileName() + ".link");
+                try {
+                    Files.createLink(link, canonical);
+                } catch (NoSuchFileException e) {
+                    // 规范副本刚被清理, 重新链接
+                    continue;
+                }
+                Files.move(link, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                LocalFileMetadataCache.invalidate(localFile.getKey());
+                DEDUPLICATED_COUNT.increment();
+                DEDUPLICATED_BYTES.add(length);
+                return;
+            }
+        } catch (UnsupportedOperationException e) {
+            // 文件系统不支持硬链接, 不去重
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.fanlychie.commons.file;
+
+import java.io.File;
+
+/**
+ * 本地文件的元数据
+ * Created by fanlychie on 2026/10/17.
+ */
+public class LocalFileMetadata {
+
+    /**
+     * 表示本地文件的 Key
+     */
+    private final String key;
+
+    /**
+     * 本地文件对象
+     */
+    private final File file;
+
+    /**
+     * 文件大小, 单位(B)
+     */
+    private final long length;
+
+    /**
+     * 文件的最后修改时间
+     */
+    private final long lastModified;
+
+    /**
+     * 文件的内容类型
+     */
+    private final String contentType;
+
+    /**
+     * 创建一个本地文件的元数据
+     *
+     * @param key          表示本地文件的 Key
+     * @param file         本地文件对象
+     * @param length       文件大小, 单位(B)
+     * @param lastModified 文件的最后修改时间
+     * @param contentType  文件的内容类型
+     */
+    public LocalFileMetadata(String key, File file, long length, long lastModified, String contentType) {
+        this.key = key;
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+    }
+
+    /**
+     * 获取表示本地文件的 Key
+     *
+     * @return 返回表示本地文件的 Key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 获取本地文件
+     *
+     * @return 返回本地文件对象
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 获取文件大小
+     *
+     * @return 返回文件大小, 单位(B)
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 获取文件的最后修改时间
+     *
+     * @return 返回文件的最后修改时间
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 获取文件的内容类型
+     *
+     * @return 返回文件的内容类型, eg: "image/jpeg"
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 获取文件的实体标签
+     *
+     * @return 返回 ETag 响应头的值
+     */
+    public String getETag() {
+        return FileUtils.getFileETag(length, lastModified);
+    }
+
+}
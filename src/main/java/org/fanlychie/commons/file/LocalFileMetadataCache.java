@@ -0,0 +1,186 @@
+package org.fanlychie.commons.file;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地文件元数据缓存, 以文件 Key 为键, 按 LRU 淘汰并在存活时间到期后失效.
+ * 缓存按 Key 的散列分段, 每段各自加锁, 容量和存活时间由 {@link LocalFileUploadConfig} 配置
+ * Created by fanlychie on 2026/10/17.
+ */
+final class LocalFileMetadataCache {
+
+    /**
+     * 分段数
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * 命中次数
+     */
+    private static final LongAdder HITS = new LongAdder();
+
+    /**
+     * 未命中次数
+     */
+    private static final LongAdder MISSES = new LongAdder();
+
+    /**
+     * 缓存分段
+     */
+    private static volatile Segment[] segments;
+
+    static {
+        clear();
+    }
+
+    // 私有
+    private LocalFileMetadataCache() {
+
+    }
+
+    /**
+     * 获取缓存的元数据
+     *
+     * @param fileKey 文件 Key
+     * @return 返回缓存的元数据, 不存在或已过期时返回 null
+     */
+    static LocalFileMetadata get(String fileKey) {
+        if (LocalFileUploadConfig.metadataCacheSize <= 0) {
+            return null;
+        }
+        Segment segment = segment(fileKey);
+        CacheEntry entry;
+        synchronized (segment) {
+            entry = segment.get(fileKey);
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                segment.remove(fileKey);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            MISSES.increment();
+            return null;
+        }
+        HITS.increment();
+        return entry.metadata;
+    }
+
+    /**
+     * 缓存元数据
+     *
+     * @param metadata 本地文件元数据
+     */
+    static void put(LocalFileMetadata metadata) {
+        if (LocalFileUploadConfig.metadataCacheSize <= 0) {
+            return;
+        }
+        CacheEntry entry = new CacheEntry(metadata, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LocalFileUploadConfig.metadataCacheTtl));
+        Segment segment = segment(metadata.getKey());
+        synchronized (segment) {
+            segment.put(metadata.getKey(), entry);
+        }
+    }
+
+    /**
+     * 使缓存的元数据失效
+     *
+     * @param fileKey 文件 Key
+     */
+    static void invalidate(String fileKey) {
+        Segment segment = segment(fileKey);
+        synchronized (segment) {
+            segment.remove(fileKey);
+        }
+    }
+
+    /**
+     * 按当前配置的容量重建缓存, 原有的缓存全部失效
+     */
+    static void clear() {
+        Segment[] newSegments = new Segment[SEGMENTS];
+        int capacity = Math.max(1, (LocalFileUploadConfig.metadataCacheSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            newSegments[i] = new Segment(capacity);
+        }
+        segments = newSegments;
+    }
+
+    /**
+     * 获取命中次数
+     *
+     * @return 返回命中次数
+     */
+    static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * 获取未命中次数
+     *
+     * @return 返回未命中次数
+     */
+    static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * 获取 Key 对应的分段
+     *
+     * @param fileKey 文件 Key
+     * @return 返回 Key 对应的分段
+     */
+    private static Segment segment(String fileKey) {
+        int hash = fileKey.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class CacheEntry {
+
+        /**
+         * 本地文件元数据
+         */
+        private final LocalFileMetadata metadata;
+
+        /**
+         * 过期时间, System.nanoTime 的值
+         */
+        private final long expiresAt;
+
+        CacheEntry(LocalFileMetadata metadata, long expiresAt) {
+            this.metadata = metadata;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+    /**
+     * 缓存分段, 按访问顺序排列, 超出容量时淘汰最久未访问的条目
+     */
+    private static class Segment extends LinkedHashMap<String, CacheEntry> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 分段容量
+         */
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > capacity;
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.fanlychie.commons.file;
+
+import java.io.OutputStream;
+
+/**
+ * 本地文件的输出流. 调用 {@link #close()} 提交写出的内容, 写出中途出错时调用 {@link #abort()} 放弃,
+ * 放弃之后再关闭不做任何事情, 因此可以放在 try-with-resources 中, 在 catch 块中放弃
+ * Created by fanlychie on 2026/10/17.
+ */
+public abstract class LocalFileOutputStream extends OutputStream {
+
+    /**
+     * 放弃写出的内容并关闭输出流, 已关闭时不做任何事情. 替换写出的存储保持文件原有的内容,
+     * 原地写出的存储(如链接数为 1 的 {@link FileSystemLocalFileStorage} 文件)无法撤销已写出的部分,
+     * 调用方应删除文件
+     */
+    public abstract void abort();
+
+}
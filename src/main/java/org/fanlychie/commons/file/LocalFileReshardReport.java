@@ -0,0 +1,136 @@
+package org.fanlychie.commons.file;
+
+/**
+ * 本地文件重新分片报告, 统计移动的文件个数、大小和吞吐量
+ * Created by fanlychie on 2026/10/17.
+ */
+public class LocalFileReshardReport {
+
+    /**
+     * 处理的迁移前的子目录个数
+     */
+    private final int folderCount;
+
+    /**
+     * 移动的文件个数
+     */
+    private final long movedCount;
+
+    /**
+     * 移动的文件总大小, 单位(B)
+     */
+    private final long movedBytes;
+
+    /**
+     * 目标位置已存在而跳过的文件个数
+     */
+    private final long skippedCount;
+
+    /**
+     * 移动失败的文件个数
+     */
+    private final long failedCount;
+
+    /**
+     * 耗时, 单位(毫秒)
+     */
+    private final long elapsedMillis;
+
+    /**
+     * 创建一个重新分片报告
+     *
+     * @param folderCount   处理的迁移前的子目录个数
+     * @param movedCount    移动的文件个数
+     * @param movedBytes    移动的文件总大小, 单位(B)
+     * @param skippedCount  目标位置已存在而跳过的文件个数
+     * @param failedCount   移动失败的文件个数
+     * @param elapsedMillis 耗时, 单位(毫秒)
+     */
+    LocalFileReshardReport(int folderCount, long movedCount, long movedBytes, long skippedCount, long failedCount, long elapsedMillis) {
+        this.folderCount = folderCount;
+        this.movedCount = movedCount;
+        this.movedBytes = movedBytes;
+        this.skippedCount = skippedCount;
+        this.failedCount = failedCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 获取处理的迁移前的子目录个数
+     *
+     * @return 返回处理的迁移前的子目录个数
+     */
+    public int getFolderCount() {
+        return folderCount;
+    }
+
+    /**
+     * 获取移动的文件个数
+     *
+     * @return 返回移动的文件个数
+     */
+    public long getMovedCount() {
+        return movedCount;
+    }
+
+    /**
+     * 获取移动的文件总大小
+     *
+     * @return 返回移动的文件总大小, 单位(B)
+     */
+    public long getMovedBytes() {
+        return movedBytes;
+    }
+
+    /**
+     * 获取目标位置已存在而跳过的文件个数
+     *
+     * @return 返回跳过的文件个数
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * 获取移动失败的文件个数
+     *
+     * @return 返回移动失败的文件个数
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * 获取耗时
+     *
+     * @return 返回耗时, 单位(毫秒)
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 获取每秒移动的文件个数
+     *
+     * @return 返回每秒移动的文件个数
+     */
+    public double getFilesPerSecond() {
+        return elapsedMillis == 0 ? movedCount : movedCount * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * 获取每秒移动的文件大小
+     *
+     * @return 返回每秒移动的文件大小, 单位(B)
+     */
+    public double getBytesPerSecond() {
+        return elapsedMillis == 0 ? movedBytes : movedBytes * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "子目录: " + folderCount + ", 移动: " + movedCount + " (" + FileUtils.getFileSize(movedBytes) + "), 跳过: " + skippedCount
+                + ", 失败: " + failedCount + ", 耗时: " + elapsedMillis + "ms, 吞吐量: " + String.format("%.1f", getFilesPerSecond()) + " 个/秒";
+    }
+
+}
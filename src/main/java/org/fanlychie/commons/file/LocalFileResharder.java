@@ -0,0 +1,148 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地文件重新分片工具. 将迁移前的子目录结构({@link LocalFileUploadConfig#setPreviousShardLayout(int, int)})中的文件,
+ * 以重命名的方式并行移到当前的子目录结构中. 迁移期间文件仍可正常访问; 已移动的文件不再出现在迁移前的子目录中,
+ * 因此中断后重新执行即从中断处继续
+ * Created by fanlychie on 2026/10/17.
+ */
+public final class LocalFileResharder {
+
+    // 私有
+    private LocalFileResharder() {
+
+    }
+
+    /**
+     * 并行重新分片, 每个迁移前的子目录由一个线程处理, 移空的子目录随后被删除
+     *
+     * @param parallelism 并行的线程数
+     * @return 返回重新分片报告
+     */
+    public static LocalFileReshardReport reshard(int parallelism) {
+        int previousChildFolderLength = LocalFileUploadConfig.previousChildFolderLength;
+        int previousShardLevels = LocalFileUploadConfig.previousShardLevels;
+        if (previousChildFolderLength <= 0 || previousShardLevels <= 0) {
+            throw new IllegalStateException("未设置迁移前的子目录结构");
+        }
+        long start = System.currentTimeMillis();
+        File root = new File(LocalFileUploadConfig.storageRootFolder);
+        List<File> folders = LocalFileShards.listShardFolders(root, previousChildFolderLength, previousShardLevels);
+        LongAdder movedCount = new LongAdder();
+        LongAdder movedBytes = new LongAdder();
+        LongAdder skippedCount = new LongAdder();
+        LongAdder failedCount = new LongAdder();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> folders.parallelStream().forEach(folder -> {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+                    for (Path path : stream) {
+                        long size = move(path);
+                        if (size >= 0) {
+                            movedCount.increment();
+                            movedBytes.add(size);
+                        } else if (size == -1) {
+                            skippedCount.increment();
+                        } else if (size == -2) {
+                            failedCount.increment();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeCastException(e);
+                }
+                deleteEmptyFolders(folder, previousShardLevels);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeCastException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeCastException(e.getCause());
+        } finally {
+            pool.shutdown();
+            LocalFileMetadataCache.clear();
+        }
+        return new LocalFileReshardReport(folders.size(), movedCount.sum(), movedBytes.sum(), skippedCount.sum(),
+                failedCount.sum(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 将文件移到当前的子目录结构中
+     *
+     * @param path 迁移前的文件路径
+     * @return 返回移动的文件大小; -1 表示目标位置已存在; -2 表示移动失败; -3 表示不是需要移动的文件
+     */
+    private static long move(Path path) {
+        String fileKey = path.getFileName().toString();
+        if (fileKey.startsWith(FileSystemLocalFileStorage.HIDDEN_PREFIX)) {
+            // 写出中的临时文件或去重的链接文件
+            return -3;
+        }
+        File targetFolder = FileSystemLocalFileStorage.getLocalFileFolder(fileKey, LocalFileUploadConfig.childFolderLength, LocalFileUploadConfig.shardLevels);
+        if (targetFolder == null) {
+            return -3;
+        }
+        Path target = new File(targetFolder, fileKey).toPath();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile() || path.equals(target)) {
+                return -3;
+            }
+            if (Files.exists(target)) {
+                return -1;
+            }
+            try {
+                Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                if (!Files.exists(path)) {
+                    // 文件已被删除
+                    return -3;
+                }
+                Files.createDirectories(targetFolder.toPath());
+                Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            LocalFileShards.markExists(fileKey.substring(0, LocalFileUploadConfig.childFolderLength * LocalFileUploadConfig.shardLevels));
+            return attributes.size();
+        } catch (NoSuchFileException e) {
+            return -3;
+        } catch (IOException e) {
+            e.printStackTrace(); // 为不打断重新分片, 此处不抛出异常
+            return -2;
+        }
+    }
+
+    /**
+     * 删除移空的子目录及其移空的上级子目录
+     *
+     * @param folder 最末级子目录
+     * @param levels 子目录的层级
+     */
+    private static void deleteEmptyFolders(File folder, int levels) {
+        for (int i = 0; i < levels; i++) {
+            try {
+                Files.deleteIfExists(folder.toPath());
+            } catch (DirectoryNotEmptyException e) {
+                return;
+            } catch (IOException e) {
+                return;
+            }
+            folder = folder.getParentFile();
+        }
+    }
+
+}
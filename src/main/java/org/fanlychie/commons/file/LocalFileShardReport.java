@@ -0,0 +1,111 @@
+package org.fanlychie.commons.file;
+
+/**
+ * 本地文件子目录报告, 统计各子目录中的文件个数
+ * Created by fanlychie on 2026/10/17.
+ */
+public class LocalFileShardReport {
+
+    /**
+     * 子目录个数
+     */
+    private final int shardCount;
+
+    /**
+     * 文件总个数
+     */
+    private final long fileCount;
+
+    /**
+     * 单个子目录中最少的文件个数
+     */
+    private final int minFileCount;
+
+    /**
+     * 单个子目录中最多的文件个数
+     */
+    private final int maxFileCount;
+
+    /**
+     * 扫描耗时, 单位(毫秒)
+     */
+    private final long elapsedMillis;
+
+    /**
+     * 创建一个子目录报告
+     *
+     * @param shardCount    子目录个数
+     * @param fileCount     文件总个数
+     * @param minFileCount  单个子目录中最少的文件个数
+     * @param maxFileCount  单个子目录中最多的文件个数
+     * @param elapsedMillis 扫描耗时, 单位(毫秒)
+     */
+    LocalFileShardReport(int shardCount, long fileCount, int minFileCount, int maxFileCount, long elapsedMillis) {
+        this.shardCount = shardCount;
+        this.fileCount = fileCount;
+        this.minFileCount = minFileCount;
+        this.maxFileCount = maxFileCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 获取子目录个数
+     *
+     * @return 返回子目录个数
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * 获取文件总个数
+     *
+     * @return 返回文件总个数
+     */
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * 获取单个子目录中最少的文件个数
+     *
+     * @return 返回单个子目录中最少的文件个数
+     */
+    public int getMinFileCount() {
+        return minFileCount;
+    }
+
+    /**
+     * 获取单个子目录中最多的文件个数
+     *
+     * @return 返回单个子目录中最多的文件个数
+     */
+    public int getMaxFileCount() {
+        return maxFileCount;
+    }
+
+    /**
+     * 获取子目录中平均的文件个数
+     *
+     * @return 返回子目录中平均的文件个数
+     */
+    public double getAverageFileCount() {
+        return shardCount == 0 ? 0 : (double) fileCount / shardCount;
+    }
+
+    /**
+     * 获取扫描耗时
+     *
+     * @return 返回扫描耗时, 单位(毫秒)
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "子目录: " + shardCount + ", 文件: " + fileCount + ", 每个子目录文件数: 最少 " + minFileCount
+                + ", 最多 " + maxFileCount + ", 平均 " + String.format("%.1f", getAverageFileCount()) + ", 耗时: " + elapsedMillis + "ms";
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * 本地文件子目录管理. 在应用启动时调用 {@link #initialize()} 并行扫描存储根目录, 将已存在的子目录载入内存,
+ * 此后访问已知子目录中的文件时无需再检查子目录是否存在. 未知的子目录仍检查文件系统, 存在时记入内存,
+ * 因此其它进程或节点在同一存储根目录下创建的子目录也能被访问
+ * Created by fanlychie on 2026/10/17.
+ */
+public final class LocalFileShards {
+
+    /**
+     * 预创建子目录时允许的最大子目录长度, 16^6 个子目录
+     */
+    private static final int MAX_PRE_CREATE_LENGTH = 6;
+
+    /**
+     * 已知存在的子目录名称
+     */
+    private static final Set<String> KNOWN_SHARDS = ConcurrentHashMap.newKeySet();
+
+    // 私有
+    private LocalFileShards() {
+
+    }
+
+    /**
+     * 初始化子目录, 并行扫描存储根目录载入已存在的子目录. 若开启了 {@link LocalFileUploadConfig#shardPreCreate},
+     * 则预先创建全部的子目录
+     *
+     * @return 返回子目录报告
+     */
+    public static LocalFileShardReport initialize() {
+        if (LocalFileUploadConfig.shardPreCreate) {
+            preCreate();
+        }
+        return scan();
+    }
+
+    /**
+     * 并行扫描存储根目录, 载入已存在的最末级子目录并统计各子目录中的文件个数
+     *
+     * @return 返回子目录报告
+     */
+    public static LocalFileShardReport scan() {
+        long start = System.currentTimeMillis();
+        List<File> shards = listShardFolders(new File(LocalFileUploadConfig.storageRootFolder),
+                LocalFileUploadConfig.childFolderLength, LocalFileUploadConfig.shardLevels);
+        IntSummaryStatistics statistics = shards.parallelStream().mapToInt(shard -> {
+            KNOWN_SHARDS.add(getShardName(shard, LocalFileUploadConfig.shardLevels));
+            String[] files = shard.list((dir, name) -> !name.startsWith(FileSystemLocalFileStorage.HIDDEN_PREFIX));
+            return files == null ? 0 : files.length;
+        }).summaryStatistics();
+        return new LocalFileShardReport(shards.size(), statistics.getSum(),
+                shards.isEmpty() ? 0 : statistics.getMin(), shards.isEmpty() ? 0 : statistics.getMax(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 并行创建全部的子目录, 各级子目录名称为长度等于 {@link LocalFileUploadConfig#childFolderLength} 的全部十六进制字符串
+     */
+    public static void preCreate() {
+        int childFolderLength = LocalFileUploadConfig.childFolderLength;
+        int length = childFolderLength * LocalFileUploadConfig.shardLevels;
+        if (length > MAX_PRE_CREATE_LENGTH) {
+            throw new IllegalStateException("子目录总长度超过 " + MAX_PRE_CREATE_LENGTH + " 时不支持预创建: " + length);
+        }
+        IntStream.range(0, 1 << (4 * length)).parallel().forEach(i -> {
+            String name = String.format("%0" + length + "x", i);
+            try {
+                Files.createDirectories(FileSystemLocalFileStorage.getLocalFileFolder(name, childFolderLength, LocalFileUploadConfig.shardLevels).toPath());
+            } catch (IOException e) {
+                throw new RuntimeCastException(e);
+            }
+            KNOWN_SHARDS.add(name);
+        });
+    }
+
+    /**
+     * 列出给定子目录结构中的全部最末级子目录
+     *
+     * @param root              存储根目录
+     * @param childFolderLength 每级子目录的长度
+     * @param shardLevels       子目录的层级
+     * @return 返回最末级子目录
+     */
+    static List<File> listShardFolders(File root, int childFolderLength, int shardLevels) {
+        List<File> folders = Collections.singletonList(root);
+        for (int i = 0; i < shardLevels; i++) {
+            List<File> children = new ArrayList<>();
+            for (File folder : folders) {
+                File[] files = folder.listFiles(file -> file.getName().length() == childFolderLength
+                        && !file.getName().startsWith(".") && file.isDirectory());
+                if (files != null) {
+                    children.addAll(Arrays.asList(files));
+                }
+            }
+            folders = children;
+        }
+        return folders;
+    }
+
+    /**
+     * 获取最末级子目录的名称, 即各级子目录名称的拼接
+     *
+     * @param shard       最末级子目录
+     * @param shardLevels 子目录的层级
+     * @return 返回子目录的名称
+     */
+    static String getShardName(File shard, int shardLevels) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < shardLevels; i++) {
+            builder.insert(0, shard.getName());
+            shard = shard.getParentFile();
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 清空内存中的子目录, 在存储根目录或子目录长度改变时调用
+     */
+    static void clear() {
+        KNOWN_SHARDS.clear();
+    }
+
+    /**
+     * 判断子目录是否已知存在
+     *
+     * @param shard 子目录名称
+     * @return 已知存在时返回 true
+     */
+    static boolean isKnown(String shard) {
+        return KNOWN_SHARDS.contains(shard);
+    }
+
+    /**
+     * 记录已存在的子目录
+     *
+     * @param shard 子目录名称
+     */
+    static void markExists(String shard) {
+        KNOWN_SHARDS.add(shard);
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.fanlychie.commons.file;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+
+/**
+ * 本地文件存储, {@link FileUtils} 通过此接口新建、查找、读写和删除由 Key 表示的本地文件.
+ * 默认使用 {@link FileSystemLocalFileStorage}, 可以通过 {@link LocalFileUploadConfig#setStorage(LocalFileStorage)} 替换
+ * Created by fanlychie on 2026/10/17.
+ */
+public interface LocalFileStorage {
+
+    /**
+     * 以原子的方式新建一个空的本地文件
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回本地文件对象
+     * @throws FileAlreadyExistsException Key 表示的文件已经存在时抛出
+     */
+    LocalFile create(String fileKey) throws FileAlreadyExistsException;
+
+    /**
+     * 获取本地文件的元数据
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回本地文件的元数据, 文件不存在时返回 null
+     */
+    LocalFileMetadata getMetadata(String fileKey);
+
+    /**
+     * 打开本地文件的读取通道
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回可定位的读取通道
+     * @throws IOException 文件不存在或读取出错时抛出
+     */
+    SeekableByteChannel openReadChannel(String fileKey) throws IOException;
+
+    /**
+     * 打开本地文件的输出流, 写出的内容覆盖文件原有的内容, 关闭输出流后内容才保证可见.
+     * 写出中途出错时调用 {@link LocalFileOutputStream#abort()} 放弃, 此后关闭不再提交.
+     * 元数据缓存由 {@link LocalFile#openOutputStream()} 在关闭时清除, 存储无需处理
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回输出流
+     * @throws IOException 文件不存在或写出出错时抛出
+     */
+    LocalFileOutputStream openOutputStream(String fileKey) throws IOException;
+
+    /**
+     * 删除本地文件
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 删除成功时返回 true, 文件不存在时返回 false
+     */
+    boolean delete(String fileKey);
+
+}
@@ -1,13 +1,24 @@
 package org.fanlychie.commons.file;
 
 import org.apache.commons.fileupload.FileItem;
+import org.fanlychie.commons.file.exception.RuntimeCastException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -54,6 +65,11 @@ public abstract class LocalFileUpload {
      */
     protected BiFunction<InputStream, File, Boolean> fileExtensionSupportedFunction;
 
+    /**
+     * 并行处理文件的线程数, 默认1, 表示逐个处理
+     */
+    protected int parallelism = 1;
+
     /**
      * 上传文件
      *
@@ -130,6 +146,70 @@ public abstract class LocalFileUpload {
         return this;
     }
 
+    /**
+     * 设置并行处理文件的线程数. 一次上传多个文件时, 各文件的写入由当前线程和共享线程池中的线程并行执行,
+     * 共享线程池的线程数由 {@link LocalFileUploadConfig#setUploadThreads(int)} 配置, 上传报告中的反馈仍按文件的原始顺序排列
+     *
+     * @param parallelism 线程数, 默认1, 表示逐个处理
+     * @return
+     */
+    public LocalFileUpload setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism 必须大于 0: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 处理上传的文件. 设置了并行处理且文件多于一个时, 每个文件写入各自的报告并在共享线程池中并行处理,
+     * 全部完成后按文件的原始顺序合并到上传报告中
+     *
+     * @param report 文件上传报告
+     * @param parts  上传的文件
+     * @param action 处理单个文件的功能
+     * @param <T>    上传的文件类型
+     */
+    protected <T> void processParts(FileUploadReport report, List<T> parts, BiConsumer<FileUploadReport, T> action) {
+        if (parallelism <= 1 || parts.size() <= 1) {
+            parts.forEach(part -> action.accept(report, part));
+            return;
+        }
+        FileUploadReport[] reports = new FileUploadReport[parts.size()];
+        for (int i = 0; i < reports.length; i++) {
+            reports[i] = new FileUploadReport();
+        }
+        // 当前线程与共享线程池中的线程依次领取下一个文件处理, 同一次上传最多占用 parallelism 个线程
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < reports.length) {
+                action.accept(reports[i], parts.get(i));
+            }
+        };
+        int workers = Math.min(parallelism, parts.size());
+        List<Future<?>> futures = new ArrayList<>(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            futures.add(UploadExecutor.submit(worker));
+        }
+        worker.run();
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeCastException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeCastException(e);
+        }
+        for (FileUploadReport partReport : reports) {
+            report.merge(partReport);
+        }
+    }
+
     /**
      * 在文件上传前执行, 以完成文件大小、类型的检验和处理
      *
@@ -137,7 +217,7 @@ public abstract class LocalFileUpload {
      * @param source   上传的文件源
      * @param fileName 文件名称
      * @param fileSize 文件大小
-     * @param consumer 本地文件对象
+     * @param consumer 本地文件对象, 存储不基于文件系统或开启了去重时不调用, 直接将文件源的内容写入存储
      */
     protected void preFileUpload(FileUploadReport report, Object source, String fileName, long fileSize, Consumer<File> consumer) {
         String extension = FileUtils.getFileExtension(fileName);
@@ -157,10 +237,21 @@ public abstract class LocalFileUpload {
             } else {
                 LocalFile localFile = FileUtils.createLocalFile(extension);
                 try {
-                    consumer.accept(localFile.getFile());
+                    if (localFile.getFile() != null && !LocalFileUploadConfig.deduplicate) {
+                        consumer.accept(localFile.getFile());
+                    } else {
+                        MessageDigest digest = LocalFileUploadConfig.deduplicate ? LocalFileDeduplicator.newDigest() : null;
+                        try (InputStream in = openSourceInputStream(source)) {
+                            writeLocalFile(localFile, in, digest);
+                        }
+                        if (digest != null) {
+                            LocalFileDeduplicator.deduplicate(localFile, digest.digest());
+                        }
+                    }
                     report.addFileUploadFeedback(localFile.getKey(), true);
                 } catch (Throwable e) {
                     e.printStackTrace(); // 为不打断多文件上传, 此处不抛出异常
+                    FileUtils.deleteLocalFile(localFile.getKey());
                     report.addFileUploadFeedback("文件 \"" + fileName + "\" 上传失败, 请重新选择上传", false);
                 }
             }
@@ -173,6 +264,25 @@ public abstract class LocalFileUpload {
         }
     }
 
+    /**
+     * 以流的方式上传文件, 文件内容直接写入本地文件, 写入的过程中完成文件大小的检验
+     *
+     * @param report      文件上传报告
+     * @param inputStream 上传的文件输入流
+     * @param fileName    文件名称
+     */
+    protected void preFileStreamUpload(FileUploadReport report, InputStream inputStream, String fileName) {
+        PartOutputStream out = new PartOutputStream(report, fileName);
+        try {
+            FileUtils.copyStream(inputStream, out);
+        } catch (IOException e) {
+            e.printStackTrace(); // 为不打断多文件上传, 此处不抛出异常
+            out.abort();
+            return;
+        }
+        out.close();
+    }
+
     /**
      * 调用额外支持文件上传的功能
      *
@@ -184,14 +294,25 @@ public abstract class LocalFileUpload {
      */
     private void invokeSupportedFileUploadFunction(FileUploadReport report, Object source, String fileName, String extension, BiFunction<InputStream, File, Boolean> biFunction) {
         try {
-            InputStream in = null;
-            if (source instanceof FileItem) {
-                in = ((FileItem) source).getInputStream();
-            } else if (source instanceof MultipartFile) {
-                in = ((MultipartFile) source).getInputStream();
-            }
+            InputStream in = openSourceInputStream(source);
             LocalFile localFile = FileUtils.createLocalFile(extension);
-            Boolean executeResult = biFunction.apply(in, localFile.getFile());
+            Boolean executeResult;
+            if (localFile.getFile() != null) {
+                executeResult = biFunction.apply(in, localFile.getFile());
+            } else {
+                // 存储不基于文件系统, 先由功能写入临时文件, 再复制到存储中
+                File tempFile = File.createTempFile("upload", "." + extension);
+                try {
+                    executeResult = biFunction.apply(in, tempFile);
+                    if (executeResult != null && executeResult) {
+                        try (InputStream tempIn = new FileInputStream(tempFile)) {
+                            writeLocalFile(localFile, tempIn, null);
+                        }
+                    }
+                } finally {
+                    tempFile.delete();
+                }
+            }
             if (executeResult != null && executeResult) {
                 report.addFileUploadFeedback(localFile.getKey(), true);
             } else {
@@ -203,4 +324,273 @@ public abstract class LocalFileUpload {
         }
     }
 
+    /**
+     * 将输入流的内容写入本地文件, 需要去重时在写出的同时计算摘要. 读取或写出出错时放弃写出的内容, 不提交不完整的文件
+     *
+     * @param localFile 本地文件对象
+     * @param in        输入流
+     * @param digest    计算摘要的对象, 不需要去重时为 null
+     * @throws IOException
+     */
+    private void writeLocalFile(LocalFile localFile, InputStream in, MessageDigest digest) throws IOException {
+        try (LocalFileOutputStream out = localFile.openOutputStream()) {
+            try {
+                FileUtils.copyStream(in, digest == null ? out : new DigestOutputStream(out, digest));
+            } catch (IOException | RuntimeException e) {
+                out.abort();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 打开上传的文件源的输入流
+     *
+     * @param source 上传的文件源
+     * @return 返回输入流, 不支持的文件源返回 null
+     * @throws IOException
+     */
+    private InputStream openSourceInputStream(Object source) throws IOException {
+        if (source instanceof FileItem) {
+            return ((FileItem) source).getInputStream();
+        } else if (source instanceof MultipartFile) {
+            return ((MultipartFile) source).getInputStream();
+        } else if (source instanceof InputStream) {
+            return (InputStream) source;
+        }
+        return null;
+    }
+
+    /**
+     * 上传文件的输出流. 以推送的方式接收上传的文件内容, 写入的过程中完成文件类型和大小的检验, 关闭时将结果反馈到上传报告.
+     * 写入不会抛出异常, 出错的文件在关闭时反馈为上传失败
+     */
+    protected class PartOutputStream extends OutputStream {
+
+        /**
+         * 文件上传报告
+         */
+        private final FileUploadReport report;
+
+        /**
+         * 文件名称
+         */
+        private final String fileName;
+
+        /**
+         * 文件扩展名
+         */
+        private final String extension;
+
+        /**
+         * 本地文件对象, 文件类型不支持时为 null
+         */
+        private LocalFile localFile;
+
+        /**
+         * 文件类型不支持但设置了文件类型支持功能时, 缓存文件内容的临时文件
+         */
+        private File tempFile;
+
+        /**
+         * 写出的目标, 不再需要写出时为 null
+         */
+        private OutputStream out;
+
+        /**
+         * 本地文件的输出流, 不再需要写出时放弃已写出的内容
+         */
+        private LocalFileOutputStream localOut;
+
+        /**
+         * 计算摘要的对象, 不需要去重时为 null
+         */
+        private MessageDigest digest;
+
+        /**
+         * 已接收的大小, 单位(B)
+         */
+        private long fileSize;
+
+        /**
+         * 写出是否出错
+         */
+        private Throwable error;
+
+        /**
+         * 是否已关闭
+         */
+        private boolean closed;
+
+        /**
+         * 创建一个上传文件的输出流
+         *
+         * @param report   文件上传报告
+         * @param fileName 文件名称
+         */
+        public PartOutputStream(FileUploadReport report, String fileName) {
+            this.report = report;
+            this.fileName = fileName;
+            this.extension = FileUtils.getFileExtension(fileName);
+            try {
+                if (allowedFileExtensions != null && !allowedFileExtensions.contains(extension)) {
+                    if (fileExtensionSupportedFunction != null) {
+                        tempFile = File.createTempFile("upload", "." + extension);
+                        out = new FileOutputStream(tempFile);
+                    }
+                } else {
+                    localFile = FileUtils.createLocalFile(extension);
+                    digest = LocalFileUploadConfig.deduplicate ? LocalFileDeduplicator.newDigest() : null;
+                    localOut = localFile.openOutputStream();
+                    out = digest == null ? localOut : new DigestOutputStream(localOut, digest);
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            fileSize += len;
+            if (out == null) {
+                return;
+            }
+            if (localFile != null && maxSize != 0 && fileSize > maxSize && fileSizeSupportedFunction == null) {
+                // 文件太大且没有文件大小支持功能, 不再写出剩余的内容
+                stop();
+                return;
+            }
+            try {
+                out.write(b, off, len);
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * 文件接收完毕, 完成文件类型和大小的检验, 并将结果反馈到上传报告
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+            if (error != null) {
+                error.printStackTrace(); // 为不打断多文件上传, 此处不抛出异常
+                discard();
+                report.addFileUploadFeedback("文件 \"" + fileName + "\" 上传失败, 请重新选择上传", false);
+                return;
+            }
+            if (localFile == null) {
+                if (tempFile != null) {
+                    try (InputStream in = new FileInputStream(tempFile)) {
+                        invokeSupportedFileUploadFunction(report, in, fileName, extension, fileExtensionSupportedFunction);
+                    } catch (IOException e) {
+                        e.printStackTrace(); // 为不打断多文件上传, 此处不抛出异常
+                        report.addFileUploadFeedback("文件 \"" + fileName + "\" 上传失败, 请重新选择上传", false);
+                    } finally {
+                        tempFile.delete();
+                    }
+                } else {
+                    report.addFileUploadFeedback("文件 \"" + fileName + "\" 是不支持上传的类型, 请选择 " + unsupportedFileExtensionMsg + " 类型的文件", false);
+                }
+                return;
+            }
+            String fileSizeMsg = null;
+            if (maxSize != 0 && fileSize > maxSize) {
+                fileSizeMsg = "太大";
+            } else if (minSize != 0 && fileSize < minSize) {
+                fileSizeMsg = "太小";
+            }
+            if (fileSizeMsg == null) {
+                try {
+                    if (digest != null) {
+                        LocalFileDeduplicator.deduplicate(localFile, digest.digest());
+                    }
+                    report.addFileUploadFeedback(localFile.getKey(), true);
+                } catch (Throwable e) {
+                    e.printStackTrace(); // 为不打断多文件上传, 此处不抛出异常
+                    discard();
+                    report.addFileUploadFeedback("文件 \"" + fileName + "\" 上传失败, 请重新选择上传", false);
+                }
+                return;
+            }
+            if (fileSizeSupportedFunction != null) {
+                try (InputStream in = localFile.openInputStream()) {
+                    invokeSupportedFileUploadFunction(report, in, fileName, extension, fileSizeSupportedFunction);
+                } catch (IOException e) {
+                    e.printStackTrace(); // 为不打断多文件上传, 此处不抛出异常
+                    report.addFileUploadFeedback("文件 \"" + fileName + "\" 上传失败, 请重新选择上传", false);
+                }
+            } else {
+                report.addFileUploadFeedback("文件 \"" + fileName + "\" " + fileSizeMsg + ", " + unsupportedFileSizeMsg, false);
+            }
+            discard();
+        }
+
+        /**
+         * 文件没有接收完毕而中止, 删除已写入的内容并反馈为上传失败
+         */
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stop();
+            discard();
+            report.addFileUploadFeedback("文件 \"" + fileName + "\" 上传失败, 请重新选择上传", false);
+        }
+
+        private void fail(Throwable e) {
+            if (error == null) {
+                error = e;
+            }
+            stop();
+        }
+
+        /**
+         * 不再写出, 放弃已写出到本地文件的内容
+         */
+        private void stop() {
+            if (localOut != null) {
+                localOut.abort();
+            } else if (out != null) {
+                closeQuietly(out);
+            }
+            out = null;
+        }
+
+        private void discard() {
+            if (localFile != null) {
+                FileUtils.deleteLocalFile(localFile.getKey());
+            }
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+
+        private void closeQuietly(OutputStream out) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+
+    }
+
+
 }
\ No newline at end of file
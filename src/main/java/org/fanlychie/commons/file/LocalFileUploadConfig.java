@@ -11,11 +11,71 @@ public class LocalFileUploadConfig {
      */
     static int childFolderLength = 5;
 
+    /**
+     * 本地上传的文件存储的子目录层级
+     */
+    static int shardLevels = 1;
+
+    /**
+     * 迁移前的子目录长度, 0 表示没有正在进行的迁移
+     */
+    static int previousChildFolderLength;
+
+    /**
+     * 迁移前的子目录层级
+     */
+    static int previousShardLevels;
+
     /**
      * 本地上传的文件存储根目录
      */
     static String storageRootFolder = System.getProperty("java.io.tmpdir");
 
+    /**
+     * I/O 缓冲区池的容量, 即池中最多保留的缓冲区个数
+     */
+    static int bufferPoolSize = 256;
+
+    /**
+     * I/O 缓冲区的大小, 单位(B)
+     */
+    static int bufferSize = 64 * 1024;
+
+    /**
+     * 并行处理上传文件的共享线程池的线程数
+     */
+    static int uploadThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 本地文件元数据缓存的容量, 0 表示不缓存
+     */
+    static int metadataCacheSize = 10000;
+
+    /**
+     * 本地文件元数据缓存的存活时间, 单位(毫秒)
+     */
+    static long metadataCacheTtl = 60 * 1000;
+
+    /**
+     * 是否生成按时间排序的文件 Key, 默认 false, 使用随机的 UUID
+     */
+    static boolean timeOrderedFileKey;
+
+    /**
+     * 初始化时是否预先创建全部的子目录, 默认 false
+     */
+    static boolean shardPreCreate;
+
+    /**
+     * 上传文件时是否按内容去重, 默认 false
+     */
+    static boolean deduplicate;
+
+    /**
+     * 本地文件存储
+     */
+    static LocalFileStorage storage = new FileSystemLocalFileStorage();
+
     /**
      * 设置本地上传的文件存储根目录
      *
@@ -23,6 +83,7 @@ public class LocalFileUploadConfig {
      */
     public void setStorageRootFolder(String storageRootFolder) {
         LocalFileUploadConfig.storageRootFolder = storageRootFolder;
+        LocalFileShards.clear();
     }
 
     /**
@@ -32,6 +93,142 @@ public class LocalFileUploadConfig {
      */
     public void setChildFolderLength(int childFolderLength) {
         LocalFileUploadConfig.childFolderLength = childFolderLength;
+        LocalFileShards.clear();
+    }
+
+    /**
+     * 设置本地上传的文件存储的子目录层级. 每级子目录的名称依次取 Key 中长度为子目录长度的一段,
+     * eg: 子目录长度为 2, 层级为 2 时, 文件存放在 ab/cd/abcd... 中, 每级最多 256 个子目录
+     *
+     * @param shardLevels 子目录层级, 默认 1
+     */
+    public void setShardLevels(int shardLevels) {
+        if (shardLevels <= 0) {
+            throw new IllegalArgumentException("shardLevels 必须大于 0: " + shardLevels);
+        }
+        LocalFileUploadConfig.shardLevels = shardLevels;
+        LocalFileShards.clear();
+    }
+
+    /**
+     * 设置迁移前的子目录结构. 改变子目录长度或层级后, 当前结构中找不到的文件再到迁移前的结构中查找,
+     * 直到 {@link LocalFileResharder#reshard(int)} 将文件全部移到当前结构中
+     *
+     * @param childFolderLength 迁移前的子目录长度, 0 表示没有正在进行的迁移
+     * @param shardLevels       迁移前的子目录层级
+     */
+    public void setPreviousShardLayout(int childFolderLength, int shardLevels) {
+        LocalFileUploadConfig.previousChildFolderLength = childFolderLength;
+        LocalFileUploadConfig.previousShardLevels = shardLevels;
+        LocalFileMetadataCache.clear();
+    }
+
+    /**
+     * 设置 I/O 缓冲区池的容量
+     *
+     * @param bufferPoolSize 池中最多保留的缓冲区个数, 默认 256
+     */
+    public void setBufferPoolSize(int bufferPoolSize) {
+        LocalFileUploadConfig.bufferPoolSize = bufferPoolSize;
+        BufferPool.clear();
+    }
+
+    /**
+     * 设置 I/O 缓冲区的大小
+     *
+     * @param bufferSize 缓冲区大小, 单位(B), 默认 64KB
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize 必须大于 0: " + bufferSize);
+        }
+        LocalFileUploadConfig.bufferSize = bufferSize;
+        BufferPool.clear();
+    }
+
+    /**
+     * 设置并行处理上传文件的共享线程池的线程数, 所有设置了 {@link LocalFileUpload#setParallelism(int)} 的上传共享此线程池
+     *
+     * @param uploadThreads 线程数, 默认为处理器个数
+     */
+    public void setUploadThreads(int uploadThreads) {
+        if (uploadThreads <= 0) {
+            throw new IllegalArgumentException("uploadThreads 必须大于 0: " + uploadThreads);
+        }
+        LocalFileUploadConfig.uploadThreads = uploadThreads;
+        UploadExecutor.clear();
+    }
+
+    /**
+     * 设置本地文件元数据缓存的容量
+     *
+     * @param metadataCacheSize 最多缓存的文件个数, 默认 10000, 0 表示不缓存
+     */
+    public void setMetadataCacheSize(int metadataCacheSize) {
+        LocalFileUploadConfig.metadataCacheSize = metadataCacheSize;
+        LocalFileMetadataCache.clear();
+    }
+
+    /**
+     * 设置本地文件元数据缓存的存活时间
+     *
+     * @param metadataCacheTtl 存活时间, 单位(毫秒), 默认 60秒
+     */
+    public void setMetadataCacheTtl(long metadataCacheTtl) {
+        LocalFileUploadConfig.metadataCacheTtl = metadataCacheTtl;
+        LocalFileMetadataCache.clear();
+    }
+
+    /**
+     * 设置是否生成按时间排序的文件 Key. 按时间排序的 Key 以毫秒时间戳开头, 新文件集中在最近的子目录中,
+     * 以默认的子目录长度 5 计算, 每个子目录容纳约 3 天内创建的文件
+     *
+     * @param timeOrderedFileKey true: 按时间排序, false: 随机的 UUID, 默认 false
+     */
+    public void setTimeOrderedFileKey(boolean timeOrderedFileKey) {
+        LocalFileUploadConfig.timeOrderedFileKey = timeOrderedFileKey;
+    }
+
+    /**
+     * 设置 {@link LocalFileShards#initialize()} 时是否预先创建全部的子目录, 子目录个数为 16 的子目录长度次方,
+     * 以默认的子目录长度 5 计算, 将创建 1048576 个子目录
+     *
+     * @param shardPreCreate true: 预先创建, false: 上传文件时按需创建, 默认 false
+     */
+    public void setShardPreCreate(boolean shardPreCreate) {
+        LocalFileUploadConfig.shardPreCreate = shardPreCreate;
+    }
+
+    /**
+     * 设置上传文件时是否按内容去重. 开启后上传的文件在写入时计算 SHA-256 摘要, 内容相同的文件以硬链接的方式只保存一份,
+     * 每次上传仍返回不同的 Key. 去重后的文件共享同一份内容, 须通过 {@link LocalFile#openOutputStream()} 改写. 不再被引用的内容通过 {@link LocalFileDeduplicator#purge()} 清理
+     *
+     * @param deduplicate true: 按内容去重, false: 不去重, 默认 false
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        LocalFileUploadConfig.deduplicate = deduplicate;
+    }
+
+    /**
+     * 设置本地文件存储
+     *
+     * @param storage 本地文件存储, 默认使用 {@link FileSystemLocalFileStorage}
+     */
+    public void setStorage(LocalFileStorage storage) {
+        if (storage == null) {
+            throw new IllegalArgumentException("storage 不能为 null");
+        }
+        LocalFileUploadConfig.storage = storage;
+        LocalFileMetadataCache.clear();
+    }
+
+    /**
+     * 获取本地文件存储
+     *
+     * @return 返回本地文件存储
+     */
+    public static LocalFileStorage getStorage() {
+        return storage;
     }
 
     /**
@@ -43,6 +240,33 @@ public class LocalFileUploadConfig {
         return childFolderLength;
     }
 
+    /**
+     * 获取本地上传的文件存储的子目录层级
+     *
+     * @return 返回本地上传的文件存储的子目录层级
+     */
+    public static int getShardLevels() {
+        return shardLevels;
+    }
+
+    /**
+     * 获取迁移前的子目录长度
+     *
+     * @return 返回迁移前的子目录长度, 0 表示没有正在进行的迁移
+     */
+    public static int getPreviousChildFolderLength() {
+        return previousChildFolderLength;
+    }
+
+    /**
+     * 获取迁移前的子目录层级
+     *
+     * @return 返回迁移前的子目录层级
+     */
+    public static int getPreviousShardLevels() {
+        return previousShardLevels;
+    }
+
     /**
      * 获取本地上传的文件存储根目录
      *
@@ -52,4 +276,123 @@ public class LocalFileUploadConfig {
         return storageRootFolder;
     }
 
+    /**
+     * 是否生成按时间排序的文件 Key
+     *
+     * @return true: 按时间排序, false: 随机的 UUID
+     */
+    public static boolean isTimeOrderedFileKey() {
+        return timeOrderedFileKey;
+    }
+
+    /**
+     * 上传文件时是否按内容去重
+     *
+     * @return true: 按内容去重, false: 不去重
+     */
+    public static boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * 初始化时是否预先创建全部的子目录
+     *
+     * @return true: 预先创建, false: 按需创建
+     */
+    public static boolean isShardPreCreate() {
+        return shardPreCreate;
+    }
+
+    /**
+     * 获取 I/O 缓冲区池的容量
+     *
+     * @return 返回池中最多保留的缓冲区个数
+     */
+    public static int getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    /**
+     * 获取 I/O 缓冲区的大小
+     *
+     * @return 返回缓冲区大小, 单位(B)
+     */
+    public static int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 获取并行处理上传文件的共享线程池的线程数
+     *
+     * @return 返回线程数
+     */
+    public static int getUploadThreads() {
+        return uploadThreads;
+    }
+
+    /**
+     * 获取从 I/O 缓冲区池中取到缓冲区的次数
+     *
+     * @return 返回命中次数
+     */
+    public static long getBufferPoolHitCount() {
+        return BufferPool.getHitCount();
+    }
+
+    /**
+     * 获取 I/O 缓冲区池中没有可用的缓冲区而新分配的次数
+     *
+     * @return 返回未命中次数
+     */
+    public static long getBufferPoolMissCount() {
+        return BufferPool.getMissCount();
+    }
+
+    /**
+     * 获取本地文件元数据缓存的容量
+     *
+     * @return 返回最多缓存的文件个数
+     */
+    public static int getMetadataCacheSize() {
+        return metadataCacheSize;
+    }
+
+    /**
+     * 获取本地文件元数据缓存的存活时间
+     *
+     * @return 返回存活时间, 单位(毫秒)
+     */
+    public static long getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    /**
+     * 获取本地文件元数据缓存的命中次数
+     *
+     * @return 返回命中次数
+     */
+    public static long getMetadataCacheHitCount() {
+        return LocalFileMetadataCache.getHitCount();
+    }
+
+    /**
+     * 获取本地文件元数据缓存的未命中次数
+     *
+     * @return 返回未命中次数
+     */
+    public static long getMetadataCacheMissCount() {
+        return LocalFileMetadataCache.getMissCount();
+    }
+
+    /**
+     * 获取本地文件元数据缓存的命中率
+     *
+     * @return 返回命中率, 0 ~ 1, 尚未访问时返回 0
+     */
+    public static double getMetadataCacheHitRate() {
+        long hits = LocalFileMetadataCache.getHitCount();
+        long total = hits + LocalFileMetadataCache.getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
 }
\ No newline at end of file
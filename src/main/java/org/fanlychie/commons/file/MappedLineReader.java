@@ -0,0 +1,165 @@
+package org.fanlychie.commons.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 内存映射的行读取器, 按窗口映射文件并在字节层面查找换行符, 只对交给调用端的行解码.
+ * 行以 '\n' 分隔, 行尾的 '\r' 会被去除
+ * Created by fanlychie on 2026/10/17.
+ */
+class MappedLineReader {
+
+    /**
+     * 默认的映射窗口大小, 64M
+     */
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * 文件通道
+     */
+    private final FileChannel channel;
+
+    /**
+     * 读取的起始位置(包含), 须位于行首
+     */
+    private final long start;
+
+    /**
+     * 读取的结束位置(不包含)
+     */
+    private final long end;
+
+    /**
+     * 映射窗口大小, 遇到超过窗口大小的行时会扩大
+     */
+    private int windowSize;
+
+    /**
+     * 创建一个行读取器
+     *
+     * @param channel    文件通道
+     * @param start      读取的起始位置(包含), 须位于行首
+     * @param end        读取的结束位置(不包含)
+     * @param windowSize 映射窗口大小
+     */
+    MappedLineReader(FileChannel channel, long start, long end, int windowSize) {
+        this.channel = channel;
+        this.start = start;
+        this.end = end;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * 逐行读取, 每行以只读的字节缓冲区视图交给调用端. 视图对象是复用的, 仅在回调期间有效
+     *
+     * @param consumer 每行的字节内容, position 到 limit 之间为行的内容
+     * @throws IOException
+     */
+    void readLineBytes(Consumer<ByteBuffer> consumer) throws IOException {
+        long position = start;
+        while (position < end) {
+            int size = (int) Math.min(windowSize, end - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            ByteBuffer view = window.asReadOnlyBuffer();
+            int lineStart = 0;
+            for (int i = 0; i < size; i++) {
+                if (window.get(i) == '\n') {
+                    accept(view, lineStart, i, size, consumer);
+                    lineStart = i + 1;
+                }
+            }
+            if (position + size >= end) {
+                if (lineStart < size) {
+                    accept(view, lineStart, size, size, consumer);
+                }
+                position = end;
+            } else if (lineStart == 0) {
+                // 整个窗口中没有换行符, 扩大窗口后重新映射
+                if (windowSize == Integer.MAX_VALUE) {
+                    throw new IOException("行的长度超出限制: " + position);
+                }
+                windowSize = (int) Math.min(Integer.MAX_VALUE, (long) windowSize * 2);
+            } else {
+                position += lineStart;
+            }
+        }
+    }
+
+    /**
+     * 逐行读取, 每行以 UTF-8 解码到复用的字符缓冲区交给调用端. 字符缓冲区仅在回调期间有效
+     *
+     * @param consumer 每行的字符内容
+     * @throws IOException
+     */
+    void readLineChars(Consumer<CharSequence> consumer) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer[] chars = {CharBuffer.allocate(1024)};
+        readLineBytes(bytes -> {
+            int required = (int) (bytes.remaining() * (double) decoder.maxCharsPerByte());
+            if (chars[0].capacity() < required) {
+                chars[0] = CharBuffer.allocate(required);
+            }
+            CharBuffer buffer = chars[0];
+            buffer.clear();
+            decoder.reset();
+            CoderResult result = decoder.decode(bytes, buffer, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(buffer);
+            }
+            if (!result.isUnderflow()) {
+                throw new IllegalStateException("UTF-8 解码失败: " + result);
+            }
+            buffer.flip();
+            consumer.accept(buffer);
+        });
+    }
+
+    /**
+     * 逐行读取, 每行以 UTF-8 解码成字符串交给调用端
+     *
+     * @param consumer 每行的内容
+     * @throws IOException
+     */
+    void readLines(Consumer<String> consumer) throws IOException {
+        byte[][] bytes = {new byte[1024]};
+        readLineBytes(line -> {
+            int length = line.remaining();
+            if (bytes[0].length < length) {
+                bytes[0] = new byte[Math.max(length, bytes[0].length * 2)];
+            }
+            line.get(bytes[0], 0, length);
+            consumer.accept(new String(bytes[0], 0, length, StandardCharsets.UTF_8));
+        });
+    }
+
+    /**
+     * 将行的内容设置到视图并交给调用端
+     *
+     * @param view      窗口的视图
+     * @param lineStart 行的起始位置(包含)
+     * @param lineEnd   行的结束位置(不包含)
+     * @param size      窗口大小
+     * @param consumer  每行的字节内容
+     */
+    private static void accept(ByteBuffer view, int lineStart, int lineEnd, int size, Consumer<ByteBuffer> consumer) {
+        view.limit(size);
+        if (lineEnd > lineStart && view.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        view.position(lineStart);
+        view.limit(lineEnd);
+        consumer.accept(view);
+    }
+
+}
@@ -0,0 +1,396 @@
+package org.fanlychie.commons.file;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于内存的本地文件存储, 文件内容以固定大小的块存放在堆外的直接缓冲区中, 总大小受容量限制. 适用于测试和对延迟敏感的小文件缓存,
+ * 进程退出后内容丢失. 写入的字节到达时即从容量中预留, 超出容量时写入立即失败, 内容不经过堆内存.
+ * 此存储中的文件没有对应的 {@link java.io.File}, {@link LocalFile#getFile()} 返回 null
+ * Created by fanlychie on 2026/10/17.
+ */
+public class MemoryLocalFileStorage implements LocalFileStorage {
+
+    /**
+     * 每个块的大小, 64K
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 空的文件内容
+     */
+    private static final Content EMPTY = new Content(new ByteBuffer[0], 0);
+
+    /**
+     * 存储的文件
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 容量, 单位(B)
+     */
+    private final long capacity;
+
+    /**
+     * 已使用的大小, 单位(B)
+     */
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * 创建一个基于内存的本地文件存储
+     *
+     * @param capacity 容量, 即所有文件内容的总大小上限, 单位(B)
+     */
+    public MemoryLocalFileStorage(long capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public LocalFile create(String fileKey) throws FileAlreadyExistsException {
+        if (entries.putIfAbsent(fileKey, new Entry(EMPTY, System.currentTimeMillis())) != null) {
+            throw new FileAlreadyExistsException(fileKey);
+        }
+        return new LocalFile(fileKey, null, this);
+    }
+
+    @Override
+    public LocalFileMetadata getMetadata(String fileKey) {
+        Entry entry = entries.get(fileKey);
+        if (entry == null) {
+            return null;
+        }
+        return new LocalFileMetadata(fileKey, null, entry.content.length, entry.lastModified, FileUtils.getContentType(fileKey));
+    }
+
+    @Override
+    public SeekableByteChannel openReadChannel(String fileKey) throws IOException {
+        Entry entry = entries.get(fileKey);
+        if (entry == null) {
+            throw new FileNotFoundException(fileKey);
+        }
+        return new ContentChannel(entry.content);
+    }
+
+    @Override
+    public LocalFileOutputStream openOutputStream(String fileKey) throws IOException {
+        if (!entries.containsKey(fileKey)) {
+            throw new FileNotFoundException(fileKey);
+        }
+        return new ChunkOutputStream(fileKey);
+    }
+
+    @Override
+    public boolean delete(String fileKey) {
+        Entry entry = entries.remove(fileKey);
+        if (entry == null) {
+            return false;
+        }
+        used.addAndGet(-entry.content.length);
+        return true;
+    }
+
+    /**
+     * 获取已使用的大小
+     *
+     * @return 返回所有文件内容占用的总大小, 包括正在写入的内容, 单位(B)
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * 获取容量
+     *
+     * @return 返回容量, 单位(B)
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 从容量中预留空间
+     *
+     * @param size 预留的大小, 单位(B)
+     * @throws IOException 超出容量时抛出
+     */
+    private void reserve(long size) throws IOException {
+        if (used.addAndGet(size) > capacity) {
+            used.addAndGet(-size);
+            throw new IOException("内存存储的容量不足: " + capacity + "B");
+        }
+    }
+
+    /**
+     * 替换文件的内容, 内容占用的空间已预留
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @param content 文件的新内容
+     * @throws IOException 文件已被删除时抛出
+     */
+    private void replace(String fileKey, Content content) throws IOException {
+        Entry[] previous = new Entry[1];
+        entries.computeIfPresent(fileKey, (key, entry) -> {
+            previous[0] = entry;
+            return new Entry(content, System.currentTimeMillis());
+        });
+        if (previous[0] == null) {
+            used.addAndGet(-content.length);
+            throw new FileNotFoundException(fileKey);
+        }
+        used.addAndGet(-previous[0].content.length);
+    }
+
+    /**
+     * 存储的文件
+     */
+    private static class Entry {
+
+        /**
+         * 文件内容
+         */
+        private final Content content;
+
+        /**
+         * 最后修改时间
+         */
+        private final long lastModified;
+
+        Entry(Content content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+    /**
+     * 文件内容, 除最后一块外每块均为 {@link #CHUNK_SIZE} 大小
+     */
+    private static class Content {
+
+        /**
+         * 内容块, position 为 0, limit 为块中内容的长度
+         */
+        private final ByteBuffer[] chunks;
+
+        /**
+         * 内容的长度
+         */
+        private final long length;
+
+        Content(ByteBuffer[] chunks, long length) {
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * 写入堆外内容块的输出流, 每次写入先从容量中预留写入的字节数, 关闭时将最后一块压缩到实际大小并替换文件的内容
+     */
+    private class ChunkOutputStream extends LocalFileOutputStream {
+
+        /**
+         * 表示本地文件的 Key
+         */
+        private final String fileKey;
+
+        /**
+         * 已写入的块
+         */
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+
+        /**
+         * 当前写入的块
+         */
+        private ByteBuffer current;
+
+        /**
+         * 已写入的长度
+         */
+        private long length;
+
+        /**
+         * 是否已关闭或已失败, 此后不再写入
+         */
+        private boolean closed;
+
+        ChunkOutputStream(String fileKey) {
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("输出流已关闭");
+            }
+            try {
+                reserve(len);
+            } catch (IOException e) {
+                // 释放已预留的空间, 文件保持原有的内容
+                discard();
+                throw e;
+            }
+            while (len > 0) {
+                if (current == null || !current.hasRemaining()) {
+                    current = ByteBuffer.allocateDirect(CHUNK_SIZE);
+                    chunks.add(current);
+                }
+                int count = Math.min(len, current.remaining());
+                current.put(b, off, count);
+                off += count;
+                len -= count;
+                length += count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ByteBuffer[] content = new ByteBuffer[chunks.size()];
+            for (int i = 0; i < content.length; i++) {
+                ByteBuffer chunk = chunks.get(i);
+                chunk.flip();
+                if (i == content.length - 1 && chunk.limit() < chunk.capacity()) {
+                    // 最后一块压缩到实际大小, 释放多余的堆外内存
+                    ByteBuffer trimmed = ByteBuffer.allocateDirect(chunk.limit());
+                    trimmed.put(chunk);
+                    trimmed.flip();
+                    chunk = trimmed;
+                }
+                content[i] = chunk;
+            }
+            chunks.clear();
+            current = null;
+            replace(fileKey, new Content(content, length));
+        }
+
+        @Override
+        public void abort() {
+            if (!closed) {
+                discard();
+            }
+        }
+
+        private void discard() {
+            closed = true;
+            used.addAndGet(-length);
+            chunks.clear();
+            current = null;
+        }
+
+    }
+
+    /**
+     * 只读的内容通道
+     */
+    private static class ContentChannel implements SeekableByteChannel {
+
+        /**
+         * 文件内容
+         */
+        private final Content content;
+
+        /**
+         * 当前读取的位置
+         */
+        private long position;
+
+        /**
+         * 通道是否打开
+         */
+        private boolean open = true;
+
+        ContentChannel(Content content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (position >= content.length) {
+                return -1;
+            }
+            int total = 0;
+            while (dst.hasRemaining() && position < content.length) {
+                ByteBuffer chunk = content.chunks[(int) (position / CHUNK_SIZE)].duplicate();
+                chunk.position((int) (position % CHUNK_SIZE));
+                if (chunk.remaining() > dst.remaining()) {
+                    chunk.limit(chunk.position() + dst.remaining());
+                }
+                int count = chunk.remaining();
+                dst.put(chunk);
+                position += count;
+                total += count;
+            }
+            return total;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException();
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return content.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void ensureOpen() throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,328 @@
+package org.fanlychie.commons.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * multipart/form-data 请求体的流式解析器. 以状态机的方式逐块解析到达的数据, 不需要完整的请求体,
+ * 也不缓存文件内容, 每块数据只保留可能属于分隔符的尾部
+ * Created by fanlychie on 2026/10/17.
+ */
+class MultipartStreamParser {
+
+    /**
+     * 各部分的头部允许的最大长度
+     */
+    private static final int MAX_HEADER_LENGTH = 16 * 1024;
+
+    /**
+     * 头部结束的标志
+     */
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    /**
+     * 解析状态: 第一个分隔符之前
+     */
+    private static final int PREAMBLE = 0;
+
+    /**
+     * 解析状态: 分隔符之后, 判断是下一部分还是结束
+     */
+    private static final int AFTER_BOUNDARY = 1;
+
+    /**
+     * 解析状态: 部分的头部
+     */
+    private static final int HEADERS = 2;
+
+    /**
+     * 解析状态: 部分的内容
+     */
+    private static final int BODY = 3;
+
+    /**
+     * 解析状态: 结束分隔符之后
+     */
+    private static final int EPILOGUE = 4;
+
+    /**
+     * 第一个分隔符, "--" + boundary
+     */
+    private final byte[] dashBoundary;
+
+    /**
+     * 部分之间的分隔符, "\r\n--" + boundary
+     */
+    private final byte[] delimiter;
+
+    /**
+     * 解析到的部分的处理器
+     */
+    private final Handler handler;
+
+    /**
+     * 尚未处理的数据
+     */
+    private byte[] buffer = new byte[8 * 1024];
+
+    /**
+     * 尚未处理的数据的长度
+     */
+    private int length;
+
+    /**
+     * 当前的解析状态
+     */
+    private int state = PREAMBLE;
+
+    /**
+     * 创建一个流式解析器
+     *
+     * @param boundary 请求头 Content-Type 中的 boundary 参数
+     * @param handler  解析到的部分的处理器
+     */
+    MultipartStreamParser(String boundary, Handler handler) {
+        this.dashBoundary = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.handler = handler;
+    }
+
+    /**
+     * 从请求头 Content-Type 中获取 boundary 参数
+     *
+     * @param contentType 请求头 Content-Type 的值
+     * @return 返回 boundary 参数, 不是 multipart 请求时返回 null
+     */
+    static String getBoundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/")) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            parameter = parameter.trim();
+            if (parameter.toLowerCase().startsWith("boundary=")) {
+                String boundary = parameter.substring("boundary=".length()).trim();
+                if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                return boundary.isEmpty() ? null : boundary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析到达的一块数据
+     *
+     * @param data   数据
+     * @param offset 起始位置
+     * @param count  数据长度
+     * @throws IOException 请求体格式错误或处理器出错时抛出
+     */
+    void feed(byte[] data, int offset, int count) throws IOException {
+        if (state == EPILOGUE) {
+            return;
+        }
+        if (length + count > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, length + count)];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+        System.arraycopy(data, offset, buffer, length, count);
+        length += count;
+        int position = 0;
+        boolean progress = true;
+        while (progress && state != EPILOGUE) {
+            int consumed;
+            switch (state) {
+                case PREAMBLE:
+                    consumed = parsePreamble(position);
+                    break;
+                case AFTER_BOUNDARY:
+                    consumed = parseAfterBoundary(position);
+                    break;
+                case HEADERS:
+                    consumed = parseHeaders(position);
+                    break;
+                default:
+                    consumed = parseBody(position);
+                    break;
+            }
+            progress = consumed > 0;
+            position += consumed;
+        }
+        if (state == EPILOGUE) {
+            length = 0;
+        } else {
+            System.arraycopy(buffer, position, buffer, 0, length - position);
+            length -= position;
+        }
+    }
+
+    /**
+     * 请求体结束
+     *
+     * @throws IOException 请求体不完整时抛出
+     */
+    void finish() throws IOException {
+        if (state != EPILOGUE) {
+            throw new IOException("multipart 请求体不完整");
+        }
+    }
+
+    /**
+     * 请求体是否已解析完成
+     *
+     * @return 解析到结束分隔符时返回 true
+     */
+    boolean isFinished() {
+        return state == EPILOGUE;
+    }
+
+    private int parsePreamble(int position) {
+        int index = indexOf(dashBoundary, position);
+        if (index == -1) {
+            // 保留可能是分隔符开头的尾部
+            return Math.max(0, length - position - (dashBoundary.length - 1));
+        }
+        state = AFTER_BOUNDARY;
+        return index - position + dashBoundary.length;
+    }
+
+    private int parseAfterBoundary(int position) throws IOException {
+        if (length - position < 2) {
+            return 0;
+        }
+        if (buffer[position] == '-' && buffer[position + 1] == '-') {
+            state = EPILOGUE;
+            return 2;
+        }
+        if (buffer[position] == '\r' && buffer[position + 1] == '\n') {
+            state = HEADERS;
+            return 2;
+        }
+        throw new IOException("multipart 分隔符之后的内容不合法");
+    }
+
+    private int parseHeaders(int position) throws IOException {
+        int end;
+        int headerLength;
+        if (length - position >= 2 && buffer[position] == '\r' && buffer[position + 1] == '\n') {
+            end = position;
+            headerLength = 2;
+        } else {
+            end = indexOf(HEADER_END, position);
+            if (end == -1) {
+                if (length - position > MAX_HEADER_LENGTH) {
+                    throw new IOException("multipart 头部超过 " + MAX_HEADER_LENGTH + "B");
+                }
+                return 0;
+            }
+            headerLength = HEADER_END.length;
+        }
+        if (end - position > MAX_HEADER_LENGTH) {
+            // 头部与结束标志在同一块中到达时同样限制长度
+            throw new IOException("multipart 头部超过 " + MAX_HEADER_LENGTH + "B");
+        }
+        String headers = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+        String name = null;
+        String fileName = null;
+        for (String header : headers.split("\r\n")) {
+            int colon = header.indexOf(':');
+            if (colon != -1 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Disposition")) {
+                name = getDispositionParameter(header.substring(colon + 1), "name");
+                fileName = getDispositionParameter(header.substring(colon + 1), "filename");
+            }
+        }
+        handler.startPart(name, fileName);
+        state = BODY;
+        return end - position + headerLength;
+    }
+
+    private int parseBody(int position) throws IOException {
+        int index = indexOf(delimiter, position);
+        if (index == -1) {
+            int safe = Math.max(0, length - position - (delimiter.length - 1));
+            if (safe > 0) {
+                handler.partData(buffer, position, safe);
+            }
+            return safe;
+        }
+        if (index > position) {
+            handler.partData(buffer, position, index - position);
+        }
+        handler.endPart();
+        state = AFTER_BOUNDARY;
+        return index - position + delimiter.length;
+    }
+
+    /**
+     * 在尚未处理的数据中查找字节序列
+     */
+    private int indexOf(byte[] target, int from) {
+        int last = length - target.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (buffer[i] != target[0]) {
+                continue;
+            }
+            for (int j = 1; j < target.length; j++) {
+                if (buffer[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 获取 Content-Disposition 头部的参数值
+     */
+    private static String getDispositionParameter(String disposition, String parameterName) {
+        for (String parameter : disposition.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals != -1 && parameter.substring(0, equals).trim().equalsIgnoreCase(parameterName)) {
+                String value = parameter.substring(equals + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析到的部分的处理器
+     */
+    interface Handler {
+
+        /**
+         * 开始一个部分
+         *
+         * @param name     表单域名称
+         * @param fileName 文件名称, 不是文件时为 null
+         * @throws IOException
+         */
+        void startPart(String name, String fileName) throws IOException;
+
+        /**
+         * 部分的一块内容
+         *
+         * @param data   数据
+         * @param offset 起始位置
+         * @param count  数据长度
+         * @throws IOException
+         */
+        void partData(byte[] data, int offset, int count) throws IOException;
+
+        /**
+         * 结束当前的部分
+         *
+         * @throws IOException
+         */
+        void endPart() throws IOException;
+
+    }
+
+}
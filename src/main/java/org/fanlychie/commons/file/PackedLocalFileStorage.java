@@ -0,0 +1,1012 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * 打包存储的本地文件存储. 不超过打包阈值的小文件追加写入到大的段文件中, 避免每个小文件占用一个 inode;
+ * 超过阈值的文件仍按 {@link FileSystemLocalFileStorage} 的目录结构单独存放. 文件的 Key 与单独存放时相同.
+ * <p>
+ * 段文件由连续的记录组成, 每条记录包含 Key、文件内容和 CRC 校验码, 删除文件时追加一条删除记录.
+ * 段文件写满后在末尾写入索引页脚并封存, 启动时从页脚重建内存中的偏移索引, 只有未封存的最后一个段文件需要逐条扫描.
+ * 被删除或覆盖的记录占用的空间通过 {@link #compact(double)} 回收.
+ * <p>
+ * 打包写入的文件在输出流关闭时同步到磁盘, 同时关闭的多个输出流合并为一次同步. 删除记录不单独同步,
+ * 随后续的写入或封存落盘, 系统崩溃时最近删除的文件可能重新出现
+ * Created by fanlychie on 2026/10/17.
+ */
+public class PackedLocalFileStorage implements LocalFileStorage, Closeable {
+
+    /**
+     * 默认的打包阈值, 64KB
+     */
+    public static final int DEFAULT_PACK_THRESHOLD = 64 * 1024;
+
+    /**
+     * 默认的段文件大小, 256MB
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * 记录的魔数
+     */
+    private static final int RECORD_MAGIC = 0x504B5231;
+
+    /**
+     * 页脚的魔数
+     */
+    private static final int FOOTER_MAGIC = 0x504B4631;
+
+    /**
+     * 记录头的长度: 魔数(4) + 类型(1) + 最后修改时间或被删除记录所在的段(8) + 内容长度(4) + Key 长度(2)
+     */
+    private static final int HEADER_LENGTH = 19;
+
+    /**
+     * 页脚尾部的长度: 条目数(4) + 页脚起始位置(8) + 魔数(4)
+     */
+    private static final int FOOTER_TAIL_LENGTH = 16;
+
+    /**
+     * 写入文件内容的记录
+     */
+    private static final byte TYPE_PUT = 1;
+
+    /**
+     * 删除文件的记录
+     */
+    private static final byte TYPE_DELETE = 2;
+
+    /**
+     * 段文件的扩展名
+     */
+    private static final String SEGMENT_EXTENSION = ".seg";
+
+    /**
+     * 超过打包阈值的文件的存储
+     */
+    private final FileSystemLocalFileStorage delegate = new FileSystemLocalFileStorage();
+
+    /**
+     * 打包文件的偏移索引
+     */
+    private final ConcurrentMap<String, Record> index = new ConcurrentHashMap<>();
+
+    /**
+     * 段文件, 按编号排序
+     */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    /**
+     * 段文件存放的目录
+     */
+    private final File segmentFolder;
+
+    /**
+     * 打包阈值, 单位(B)
+     */
+    private final int packThreshold;
+
+    /**
+     * 段文件大小, 单位(B)
+     */
+    private final long segmentSize;
+
+    /**
+     * 当前追加写入的段文件
+     */
+    private Segment active;
+
+    /**
+     * 压缩的锁, 同一时刻只有一个压缩在执行
+     */
+    private final Object compactLock = new Object();
+
+    /**
+     * 创建一个打包存储的本地文件存储, 段文件存放在存储根目录下的 .segments 目录中
+     */
+    public PackedLocalFileStorage() {
+        this(new File(LocalFileUploadConfig.storageRootFolder, ".segments").getPath(), DEFAULT_PACK_THRESHOLD, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * 创建一个打包存储的本地文件存储, 并从已有的段文件中重建偏移索引
+     *
+     * @param segmentFolder 段文件存放的目录
+     * @param packThreshold 打包阈值, 不超过此大小的文件打包存储, 单位(B)
+     * @param segmentSize   段文件大小, 段文件超过此大小后封存, 单位(B)
+     */
+    public PackedLocalFileStorage(String segmentFolder, int packThreshold, long segmentSize) {
+        if (packThreshold <= 0 || segmentSize <= packThreshold) {
+            throw new IllegalArgumentException("段文件大小必须大于打包阈值, 且打包阈值必须大于 0: " + packThreshold + ", " + segmentSize);
+        }
+        this.segmentFolder = new File(segmentFolder);
+        this.packThreshold = packThreshold;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(this.segmentFolder.toPath());
+            load();
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    @Override
+    public LocalFile create(String fileKey) throws FileAlreadyExistsException {
+        if (index.putIfAbsent(fileKey, new Record(fileKey, System.currentTimeMillis())) != null) {
+            throw new FileAlreadyExistsException(fileKey);
+        }
+        if (delegate.getMetadata(fileKey) != null) {
+            index.remove(fileKey);
+            throw new FileAlreadyExistsException(fileKey);
+        }
+        return new LocalFile(fileKey, null, this);
+    }
+
+    @Override
+    public LocalFileMetadata getMetadata(String fileKey) {
+        Record record = index.get(fileKey);
+        if (record == null) {
+            return delegate.getMetadata(fileKey);
+        }
+        return new LocalFileMetadata(fileKey, null, record.length, record.value, FileUtils.getContentType(fileKey));
+    }
+
+    @Override
+    public SeekableByteChannel openReadChannel(String fileKey) throws IOException {
+        while (true) {
+            Record record = index.get(fileKey);
+            if (record == null) {
+                return delegate.openReadChannel(fileKey);
+            }
+            if (record.segment == null) {
+                return new SegmentChannel(null, 0, 0);
+            }
+            if (record.segment.retain()) {
+                return new SegmentChannel(record.segment, record.offset, record.length);
+            }
+            // 段文件已被压缩回收, 记录已移到新的段文件中, 重新查找
+        }
+    }
+
+    @Override
+    public LocalFileOutputStream openOutputStream(String fileKey) throws IOException {
+        if (!index.containsKey(fileKey)) {
+            return delegate.openOutputStream(fileKey);
+        }
+        return new PackingOutputStream(fileKey);
+    }
+
+    @Override
+    public boolean delete(String fileKey) {
+        synchronized (this) {
+            Record record = index.remove(fileKey);
+            if (record == null) {
+                return delegate.delete(fileKey);
+            }
+            if (record.segment != null) {
+                try {
+                    append(TYPE_DELETE, fileKey, record.segment.id, null, 0);
+                } catch (IOException e) {
+                    index.putIfAbsent(fileKey, record);
+                    throw new RuntimeCastException(e);
+                }
+                record.segment.liveBytes -= record.size;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 压缩段文件. 有效记录占比不超过给定比例的已封存段文件, 其有效记录被复制到当前的段文件中, 然后删除该段文件.
+     * 记录的内容在锁外读取, 只有追加记录和替换索引时持有锁, 每次持有的时间与写入一个文件相当,
+     * 压缩期间的写入、读取和删除不会被阻塞到压缩结束
+     *
+     * @param liveRatio 有效记录的占比, 0 ~ 1, eg: 0.5
+     * @return 返回回收的空间大小, 单位(B)
+     */
+    public long compact(double liveRatio) {
+        synchronized (compactLock) {
+            // 压缩过程中新写入的段文件不参与本次压缩
+            Map<Segment, List<Record>> liveRecords = new LinkedHashMap<>();
+            synchronized (this) {
+                for (Segment segment : segments.values()) {
+                    if (segment != active && (double) segment.liveBytes / segment.size <= liveRatio) {
+                        liveRecords.put(segment, new ArrayList<>());
+                    }
+                }
+                for (Record record : index.values()) {
+                    List<Record> records = record.segment == null ? null : liveRecords.get(record.segment);
+                    if (records != null) {
+                        records.add(record);
+                    }
+                }
+            }
+            long reclaimed = 0;
+            try {
+                for (Map.Entry<Segment, List<Record>> entry : liveRecords.entrySet()) {
+                    Segment segment = entry.getKey();
+                    Record copied = null;
+                    for (Record record : entry.getValue()) {
+                        // 已封存的段文件只会被压缩回收, 读取无需持有锁
+                        ByteBuffer data = ByteBuffer.allocate(record.length);
+                        readFully(segment.channel, data, record.offset);
+                        synchronized (this) {
+                            // 读取期间文件可能已被覆盖或删除, 只复制仍然有效的记录
+                            if (index.get(record.key) == record) {
+                                copied = append(TYPE_PUT, record.key, record.value, data.array(), record.length);
+                            }
+                        }
+                    }
+                    synchronized (this) {
+                        for (Record tombstone : segment.tombstones) {
+                            // 被删除的记录所在的段文件尚未回收时, 删除记录仍需保留
+                            if (segments.containsKey(tombstone.value) && tombstone.value != segment.id) {
+                                copied = append(TYPE_DELETE, tombstone.key, tombstone.value, null, 0);
+                            }
+                        }
+                    }
+                    // 复制的记录落盘后才能删除原段文件
+                    if (copied != null) {
+                        force(copied);
+                    }
+                    synchronized (this) {
+                        segments.remove(segment.id);
+                        reclaimed += segment.size;
+                        segment.retire();
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeCastException(e);
+            }
+            return reclaimed;
+        }
+    }
+
+    /**
+     * 获取段文件的个数
+     *
+     * @return 返回段文件的个数
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 获取打包存储的文件个数
+     *
+     * @return 返回打包存储的文件个数
+     */
+    public int getPackedFileCount() {
+        return index.size();
+    }
+
+    /**
+     * 获取打包阈值
+     *
+     * @return 返回打包阈值, 单位(B)
+     */
+    public int getPackThreshold() {
+        return packThreshold;
+    }
+
+    /**
+     * 关闭全部的段文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    /**
+     * 从段文件中重建偏移索引. 已封存的段文件读取页脚, 未封存的段文件逐条扫描记录, 扫描到损坏的记录时截断
+     *
+     * @throws IOException
+     */
+    private void load() throws IOException {
+        File[] files = segmentFolder.listFiles((dir, name) -> name.endsWith(SEGMENT_EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+                    segments.put(id, new Segment(id, file, false));
+                } catch (NumberFormatException e) {
+                    // 不是段文件, 忽略
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            List<Record> records = readFooter(segment);
+            if (records == null) {
+                records = scan(segment);
+            } else {
+                segment.sealed = true;
+            }
+            for (Record record : records) {
+                if (record.type == TYPE_PUT) {
+                    index.put(record.key, record);
+                } else {
+                    Record current = index.get(record.key);
+                    if (current != null && current.segment.id == record.value) {
+                        index.remove(record.key);
+                    }
+                    segment.tombstones.add(record);
+                }
+            }
+        }
+        for (Record record : index.values()) {
+            record.segment.liveBytes += record.size;
+        }
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        if (last != null && !last.getValue().sealed) {
+            active = last.getValue();
+            active.channel.close();
+            active.channel = FileChannel.open(active.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            active.channel.truncate(active.size);
+        } else {
+            roll();
+        }
+    }
+
+    /**
+     * 读取段文件的页脚
+     *
+     * @param segment 段文件
+     * @return 返回页脚中的记录, 段文件未封存时返回 null
+     * @throws IOException
+     */
+    private List<Record> readFooter(Segment segment) throws IOException {
+        long end = segment.channel.size();
+        if (end < FOOTER_TAIL_LENGTH) {
+            return null;
+        }
+        ByteBuffer tail = ByteBuffer.allocate(FOOTER_TAIL_LENGTH);
+        readFully(segment.channel, tail, end - FOOTER_TAIL_LENGTH);
+        tail.flip();
+        int count = tail.getInt();
+        long footerStart = tail.getLong();
+        if (tail.getInt() != FOOTER_MAGIC || footerStart < 0 || footerStart > end - FOOTER_TAIL_LENGTH) {
+            return null;
+        }
+        ByteBuffer footer = ByteBuffer.allocate((int) (end - FOOTER_TAIL_LENGTH - footerStart));
+        readFully(segment.channel, footer, footerStart);
+        footer.flip();
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = footer.get();
+            byte[] key = new byte[footer.getShort() & 0xFFFF];
+            footer.get(key);
+            long offset = footer.getLong();
+            int length = footer.getInt();
+            long value = footer.getLong();
+            records.add(new Record(type, new String(key, StandardCharsets.UTF_8), segment, offset, length, value, key.length));
+        }
+        segment.size = end;
+        return records;
+    }
+
+    /**
+     * 逐条扫描段文件中的记录, 遇到不完整或校验失败的记录时停止
+     *
+     * @param segment 段文件
+     * @return 返回段文件中的记录
+     * @throws IOException
+     */
+    private List<Record> scan(Segment segment) throws IOException {
+        List<Record> records = new ArrayList<>();
+        long end = segment.channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        CRC32 crc = new CRC32();
+        while (position + HEADER_LENGTH <= end) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            header.flip();
+            if (header.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            byte type = header.get();
+            long value = header.getLong();
+            int length = header.getInt();
+            int keyLength = header.getShort() & 0xFFFF;
+            if (length < 0 || position + HEADER_LENGTH + keyLength + length + 4 > end) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(keyLength + length + 4);
+            readFully(segment.channel, body, position + HEADER_LENGTH);
+            crc.reset();
+            crc.update(body.array(), keyLength, length);
+            body.position(keyLength + length);
+            if (body.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            String key = new String(body.array(), 0, keyLength, StandardCharsets.UTF_8);
+            Record record = new Record(type, key, segment, position + HEADER_LENGTH + keyLength, length, value, keyLength);
+            records.add(record);
+            position += record.size;
+        }
+        segment.size = position;
+        segment.records = records;
+        return records;
+    }
+
+    /**
+     * 向当前的段文件追加一条记录, 段文件写满时先封存再新建
+     *
+     * @param type   记录类型
+     * @param key    表示本地文件的 Key
+     * @param value  写入文件内容时为最后修改时间, 删除文件时为被删除记录所在的段文件编号
+     * @param data   文件内容
+     * @param length 文件内容的长度
+     * @return 返回追加的记录
+     * @throws IOException
+     */
+    private Record append(byte type, String key, long value, byte[] data, int length) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER_LENGTH + keyBytes.length + length + 4;
+        if (active.size > 0 && active.size + size > segmentSize) {
+            seal(active);
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data == null ? new byte[0] : data, 0, length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(RECORD_MAGIC).put(type).putLong(value).putInt(length).putShort((short) keyBytes.length).put(keyBytes);
+        if (data != null) {
+            buffer.put(data, 0, length);
+        }
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        writeFully(active.channel, buffer, active.size);
+        Record record = new Record(type, key, active, active.size + HEADER_LENGTH + keyBytes.length, length, value, keyBytes.length);
+        active.size += size;
+        active.records.add(record);
+        if (type == TYPE_PUT) {
+            Record previous = index.put(key, record);
+            if (previous != null && previous.segment != null) {
+                previous.segment.liveBytes -= previous.size;
+            }
+            active.liveBytes += size;
+        } else {
+            active.tombstones.add(record);
+        }
+        return record;
+    }
+
+    /**
+     * 在段文件的末尾写入索引页脚, 封存段文件
+     *
+     * @param segment 段文件
+     * @throws IOException
+     */
+    private void seal(Segment segment) throws IOException {
+        int footerLength = FOOTER_TAIL_LENGTH;
+        for (Record record : segment.records) {
+            footerLength += 23 + record.keyLength;
+        }
+        ByteBuffer footer = ByteBuffer.allocate(footerLength);
+        for (Record record : segment.records) {
+            byte[] key = record.key.getBytes(StandardCharsets.UTF_8);
+            footer.put(record.type).putShort((short) key.length).put(key).putLong(record.offset).putInt(record.length).putLong(record.value);
+        }
+        footer.putInt(segment.records.size()).putLong(segment.size).putInt(FOOTER_MAGIC);
+        footer.flip();
+        writeFully(segment.channel, footer, segment.size);
+        segment.channel.force(true);
+        synchronized (segment.forceLock) {
+            segment.forced = Long.MAX_VALUE;
+        }
+        segment.size += footerLength;
+        segment.sealed = true;
+        segment.records = null;
+    }
+
+    /**
+     * 新建一个段文件作为当前追加写入的段文件
+     *
+     * @throws IOException
+     */
+    private void roll() throws IOException {
+        long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        active = new Segment(id, new File(segmentFolder, String.format("%010d", id) + SEGMENT_EXTENSION), true);
+        active.records = new ArrayList<>();
+        segments.put(id, active);
+    }
+
+    /**
+     * 以打包的方式写入文件内容的记录, 在关闭时决定是否打包
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @param data    文件内容
+     * @param length  文件内容的长度
+     * @return 返回追加的记录
+     * @throws IOException
+     */
+    private synchronized Record put(String fileKey, byte[] data, int length) throws IOException {
+        if (!index.containsKey(fileKey)) {
+            throw new FileNotFoundException(fileKey);
+        }
+        return append(TYPE_PUT, fileKey, System.currentTimeMillis(), data, length);
+    }
+
+    /**
+     * 文件内容超过打包阈值而单独存放后, 移除其打包的记录
+     *
+     * @param fileKey 表示本地文件的 Key
+     * @return 返回追加的删除记录, 没有打包的记录时返回 null
+     * @throws IOException
+     */
+    private synchronized Record unpack(String fileKey) throws IOException {
+        Record record = index.remove(fileKey);
+        if (record != null && record.segment != null) {
+            record.segment.liveBytes -= record.size;
+            return append(TYPE_DELETE, fileKey, record.segment.id, null, 0);
+        }
+        return null;
+    }
+
+    /**
+     * 将记录同步到磁盘. 同步时段文件中已写入的全部内容一起落盘, 等待同步的其它记录随之完成, 无需再次同步
+     *
+     * @param record 段文件中的记录
+     * @throws IOException
+     */
+    private static void force(Record record) throws IOException {
+        Segment segment = record.segment;
+        long end = record.offset + record.length + 4;
+        synchronized (segment.forceLock) {
+            if (segment.forced < end) {
+                long size = segment.channel.size();
+                segment.channel.force(false);
+                segment.forced = size;
+            }
+        }
+    }
+
+    /**
+     * 从通道的指定位置读满缓冲区
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * 将缓冲区的内容全部写到通道的指定位置
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 段文件
+     */
+    private static class Segment {
+
+        /**
+         * 段文件编号
+         */
+        private final long id;
+
+        /**
+         * 段文件对象
+         */
+        private final File file;
+
+        /**
+         * 段文件通道
+         */
+        private FileChannel channel;
+
+        /**
+         * 段文件大小, 单位(B)
+         */
+        private long size;
+
+        /**
+         * 有效记录的大小, 单位(B)
+         */
+        private long liveBytes;
+
+        /**
+         * 是否已封存
+         */
+        private boolean sealed;
+
+        /**
+         * 已同步到磁盘的位置, 在此之前的内容已落盘
+         */
+        private long forced;
+
+        /**
+         * 同步的锁, 与存储的锁分开, 同步期间不阻塞追加写入
+         */
+        private final Object forceLock = new Object();
+
+        /**
+         * 未封存时段文件中的全部记录, 用于封存时写入页脚
+         */
+        private List<Record> records;
+
+        /**
+         * 段文件中的删除记录
+         */
+        private final List<Record> tombstones = new ArrayList<>();
+
+        /**
+         * 正在读取此段文件的通道个数, -1 表示已关闭
+         */
+        private final AtomicInteger references = new AtomicInteger();
+
+        /**
+         * 是否已被压缩回收
+         */
+        private volatile boolean retired;
+
+        Segment(long id, File file, boolean create) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = create ? FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)
+                    : FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        /**
+         * 开始读取段文件
+         *
+         * @return 段文件已关闭时返回 false
+         */
+        boolean retain() {
+            while (true) {
+                int count = references.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 结束读取段文件
+         */
+        void release() {
+            if (references.decrementAndGet() == 0 && retired) {
+                destroy();
+            }
+        }
+
+        /**
+         * 回收段文件, 没有正在读取的通道时关闭并删除
+         */
+        void retire() {
+            retired = true;
+            destroy();
+        }
+
+        private void destroy() {
+            if (references.compareAndSet(0, -1)) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // 忽略
+                }
+                file.delete();
+            }
+        }
+
+    }
+
+    /**
+     * 段文件中的记录
+     */
+    private static class Record {
+
+        /**
+         * 记录类型
+         */
+        private final byte type;
+
+        /**
+         * 表示本地文件的 Key
+         */
+        private final String key;
+
+        /**
+         * 记录所在的段文件, 已新建而尚未写入内容的文件为 null
+         */
+        private final Segment segment;
+
+        /**
+         * 文件内容在段文件中的位置
+         */
+        private final long offset;
+
+        /**
+         * 文件内容的长度
+         */
+        private final int length;
+
+        /**
+         * 写入文件内容时为最后修改时间, 删除文件时为被删除记录所在的段文件编号
+         */
+        private final long value;
+
+        /**
+         * Key 的字节长度
+         */
+        private final int keyLength;
+
+        /**
+         * 记录在段文件中占用的大小
+         */
+        private final int size;
+
+        Record(String key, long lastModified) {
+            this(TYPE_PUT, key, null, 0, 0, lastModified, 0);
+        }
+
+        Record(byte type, String key, Segment segment, long offset, int length, long value, int keyLength) {
+            this.type = type;
+            this.key = key;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.value = value;
+            this.keyLength = keyLength;
+            this.size = HEADER_LENGTH + keyLength + length + 4;
+        }
+
+    }
+
+    /**
+     * 读取段文件中一条记录的文件内容的通道, 使用定位读取, 多个通道可以并发读取同一个段文件
+     */
+    private static class SegmentChannel implements SeekableByteChannel {
+
+        /**
+         * 段文件
+         */
+        private final Segment segment;
+
+        /**
+         * 文件内容在段文件中的位置
+         */
+        private final long start;
+
+        /**
+         * 文件内容的长度
+         */
+        private final long length;
+
+        /**
+         * 当前读取的位置
+         */
+        private long position;
+
+        /**
+         * 通道是否打开
+         */
+        private boolean open = true;
+
+        SegmentChannel(Segment segment, long start, long length) {
+            this.segment = segment;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (position >= length) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > length - position) {
+                dst.limit(dst.position() + (int) (length - position));
+            }
+            try {
+                int read = segment.channel.read(dst, start + position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException();
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                if (segment != null) {
+                    segment.release();
+                }
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+
+    }
+
+    /**
+     * 打包的输出流. 内容不超过打包阈值时缓存在内存中, 关闭时追加到段文件; 超过阈值时转为单独存放的文件
+     */
+    private class PackingOutputStream extends LocalFileOutputStream {
+
+        /**
+         * 表示本地文件的 Key
+         */
+        private final String fileKey;
+
+        /**
+         * 缓存的文件内容
+         */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        /**
+         * 超过打包阈值后单独存放的文件的输出流
+         */
+        private LocalFileOutputStream unpacked;
+
+        /**
+         * 单独存放的文件是否由此输出流创建, 放弃时删除
+         */
+        private boolean created;
+
+        /**
+         * 是否已关闭
+         */
+        private boolean closed;
+
+        PackingOutputStream(String fileKey) {
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (unpacked == null && buffer.size() + len > packThreshold) {
+                try {
+                    delegate.create(fileKey);
+                    created = true;
+                } catch (FileAlreadyExistsException e) {
+                    // 重复写入时文件已经存在
+                }
+                unpacked = delegate.openOutputStream(fileKey);
+                buffer.writeTo(unpacked);
+                buffer.reset();
+            }
+            if (unpacked != null) {
+                unpacked.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (unpacked != null) {
+                unpacked.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Record record;
+            if (unpacked != null) {
+                unpacked.close();
+                record = unpack(fileKey);
+            } else {
+                record = put(fileKey, buffer.toByteArray(), buffer.size());
+            }
+            if (record != null) {
+                force(record);
+            }
+        }
+
+        @Override
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.reset();
+            if (unpacked != null) {
+                unpacked.abort();
+            }
+            if (created) {
+                delegate.delete(fileKey);
+            }
+        }
+
+    }
+
+}
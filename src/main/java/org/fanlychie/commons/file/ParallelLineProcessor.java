@@ -0,0 +1,207 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 并行的行处理器, 将文件按换行符对齐切分成若干字节区间, 每个区间由 {@link MappedLineReader} 在 fork-join 线程池中读取
+ * Created by fanlychie on 2026/10/17.
+ */
+class ParallelLineProcessor {
+
+    /**
+     * 每个线程平均分到的区间个数, 区间切得更细以平衡各线程的负载
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * 区间的最小大小, 1M
+     */
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * 区间的最大大小, 64M. 大文件切成更多的区间, 窗口内等待合并的结果才有上限
+     */
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * 每个线程允许领先于合并位置的区间个数. 已提交但尚未合并的区间不超过 parallelism * WINDOW_PER_THREAD 个,
+     * 前面的区间处理较慢时, 后面已完成区间的结果不会无限堆积
+     */
+    private static final int WINDOW_PER_THREAD = 2;
+
+    /**
+     * 读取的文件
+     */
+    private final File file;
+
+    /**
+     * 并行度
+     */
+    private final int parallelism;
+
+    /**
+     * 创建一个并行的行处理器
+     *
+     * @param file        读取的文件
+     * @param parallelism 并行度, 即同时处理的线程个数
+     */
+    ParallelLineProcessor(File file, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism 必须大于 0: " + parallelism);
+        }
+        this.file = file;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 并行处理每行内容, 行的处理顺序不确定
+     *
+     * @param consumer 每行的内容, 会被多个线程同时调用
+     */
+    void process(Consumer<String> consumer) {
+        execute(reader -> {
+            reader.readLines(consumer);
+            return null;
+        }, result -> {
+        });
+    }
+
+    /**
+     * 并行转换每行内容, 转换的结果按行在文件中的顺序交给调用端
+     *
+     * @param mapper   每行内容的转换, 会被多个线程同时调用
+     * @param consumer 转换的结果, 按行的顺序在调用线程中被调用
+     */
+    <R> void process(Function<String, R> mapper, Consumer<R> consumer) {
+        execute(reader -> {
+            List<R> results = new ArrayList<>();
+            reader.readLines(line -> results.add(mapper.apply(line)));
+            return results;
+        }, results -> results.forEach(consumer));
+    }
+
+    /**
+     * 切分文件并在线程池中处理每个区间, 区间的结果按区间的顺序合并. 每合并一个区间再提交下一个区间,
+     * 同时在处理或等待合并的区间个数不超过窗口大小
+     *
+     * @param task  区间的处理
+     * @param merge 区间结果的合并
+     */
+    private <T> void execute(ChunkTask<T> task, Consumer<T> merge) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            Deque<Future<T>> window = new ArrayDeque<>();
+            long[] boundaries = split(channel);
+            int chunks = boundaries.length - 1;
+            int windowSize = parallelism * WINDOW_PER_THREAD;
+            int next = 0;
+            while (next < chunks || !window.isEmpty()) {
+                while (next < chunks && window.size() < windowSize) {
+                    long start = boundaries[next];
+                    long end = boundaries[next + 1];
+                    window.add(pool.submit(() -> task.apply(new MappedLineReader(channel, start, end, MappedLineReader.WINDOW_SIZE))));
+                    next++;
+                }
+                merge.accept(window.poll().get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeCastException(cause);
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeCastException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 将文件切分成按行首对齐的区间
+     *
+     * @param channel 文件通道
+     * @return 返回区间的边界, 第 i 个区间为 [boundaries[i], boundaries[i + 1])
+     * @throws IOException
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / ((long) parallelism * CHUNKS_PER_THREAD)));
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long last = 0;
+        while (last < size) {
+            long next = last + chunkSize >= size ? size : alignToLineStart(channel, last + chunkSize, size);
+            boundaries.add(next);
+            last = next;
+        }
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 从指定位置向后查找下一个行首
+     *
+     * @param channel  文件通道
+     * @param position 查找的起始位置
+     * @param size     文件大小
+     * @return 返回不小于 position 的第一个行首位置, 找不到时返回文件大小
+     * @throws IOException
+     */
+    private static long alignToLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        // 前一个字节是换行符时, position 本身就是行首
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * 区间的处理
+     *
+     * @param <T> 处理的结果类型
+     */
+    private interface ChunkTask<T> {
+
+        /**
+         * 处理一个区间
+         *
+         * @param reader 区间的行读取器
+         * @return 返回处理的结果
+         * @throws IOException
+         */
+        T apply(MappedLineReader reader) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.fanlychie.commons.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * 将 ASCII 字符流适配为字节流, 用于 Base64 等纯 ASCII 内容, 避免将整个内容转换成字符串或字节数组
+ * Created by fanlychie on 2026/10/17.
+ */
+class ReaderInputStream extends InputStream {
+
+    /**
+     * 字符流
+     */
+    private final Reader reader;
+
+    /**
+     * 字符缓冲区
+     */
+    private final char[] buffer = new char[8 * 1024];
+
+    /**
+     * 缓冲区当前读取的位置
+     */
+    private int position;
+
+    /**
+     * 缓冲区有效的字符个数
+     */
+    private int limit;
+
+    /**
+     * 创建一个字节流
+     *
+     * @param reader ASCII 字符流
+     */
+    ReaderInputStream(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return toAscii(buffer[position++]);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int count = Math.min(len, limit - position);
+        for (int i = 0; i < count; i++) {
+            b[off + i] = (byte) toAscii(buffer[position++]);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 填充缓冲区
+     *
+     * @return 到达流的末尾时返回 false
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer);
+        } while (read == 0);
+        if (read == -1) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    /**
+     * 字符转换成 ASCII 字节
+     *
+     * @param c 字符
+     * @return 返回 ASCII 字节
+     * @throws IOException 非 ASCII 字符时抛出
+     */
+    private static int toAscii(char c) throws IOException {
+        if (c > 0x7F) {
+            throw new IOException("非 ASCII 字符: " + c);
+        }
+        return c;
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.fanlychie.commons.file;
+
+/**
+ * 响应内容的片段, 由可选的片段头和内容中的一个区间组成, 用于按区间响应文件
+ * Created by fanlychie on 2026/10/17.
+ */
+class ResponsePart {
+
+    /**
+     * 片段头, 在区间的内容之前写出, 没有时为 null
+     */
+    private final byte[] header;
+
+    /**
+     * 区间的起始位置
+     */
+    private final long start;
+
+    /**
+     * 区间的长度, 0 表示只写出片段头
+     */
+    private final long length;
+
+    /**
+     * 创建一个响应内容的片段
+     *
+     * @param header 片段头, 没有时为 null
+     * @param start  区间的起始位置
+     * @param length 区间的长度
+     */
+    ResponsePart(byte[] header, long start, long length) {
+        this.header = header;
+        this.start = start;
+        this.length = length;
+    }
+
+    /**
+     * 获取片段头
+     *
+     * @return 返回片段头, 没有时返回 null
+     */
+    byte[] getHeader() {
+        return header;
+    }
+
+    /**
+     * 获取区间的起始位置
+     *
+     * @return 返回区间的起始位置
+     */
+    long getStart() {
+        return start;
+    }
+
+    /**
+     * 获取区间的长度
+     *
+     * @return 返回区间的长度
+     */
+    long getLength() {
+        return length;
+    }
+
+}
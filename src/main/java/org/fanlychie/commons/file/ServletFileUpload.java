@@ -1,12 +1,17 @@
 package org.fanlychie.commons.file;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.fanlychie.commons.file.exception.RuntimeCastException;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Servlet 文件上传
@@ -19,6 +24,11 @@ public class ServletFileUpload extends LocalFileUpload {
      */
     private HttpServletRequest request;
 
+    /**
+     * 是否以流的方式上传, 默认 false
+     */
+    private boolean streaming;
+
     /**
      * 创建一个 Servlet 文件上传
      *
@@ -28,6 +38,18 @@ public class ServletFileUpload extends LocalFileUpload {
         this.request = request;
     }
 
+    /**
+     * 设置是否以流的方式上传. 流方式上传时, 上传的文件内容不再先缓存到临时文件, 而是直接写入本地文件,
+     * 文件大小的限制在写入的过程中检验. 请求体只能顺序读取, 流方式上传时不并行处理文件
+     *
+     * @param streaming true: 流方式上传, false: 先解析整个请求再上传, 默认 false
+     * @return
+     */
+    public ServletFileUpload setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
     /**
      * 执行文件上传
      *
@@ -38,6 +60,8 @@ public class ServletFileUpload extends LocalFileUpload {
         FileUploadReport report = new FileUploadReport();
         if (!org.apache.commons.fileupload.servlet.ServletFileUpload.isMultipartContent(request)) {
             report.addFileUploadFeedback("不支持文件上传的表单域", false);
+        } else if (streaming) {
+            uploadStreaming(report);
         } else {
             org.apache.commons.fileupload.servlet.ServletFileUpload fileUpload = new org.apache.commons.fileupload.servlet.ServletFileUpload(new DiskFileItemFactory());
             fileUpload.setHeaderEncoding("UTF-8");
@@ -49,8 +73,9 @@ public class ServletFileUpload extends LocalFileUpload {
                 report.addFileUploadFeedback("文件上传失败, 请重新上传", false);
             }
             if (fileItems != null) {
-                fileItems.stream().filter(fileItem -> !fileItem.isFormField()).forEach(fileItem -> {
-                    preFileUpload(report, fileItem, fileItem.getName(), fileItem.getSize(), localFile -> {
+                List<FileItem> parts = fileItems.stream().filter(fileItem -> !fileItem.isFormField()).collect(Collectors.toList());
+                processParts(report, parts, (partReport, fileItem) -> {
+                    preFileUpload(partReport, fileItem, fileItem.getName(), fileItem.getSize(), localFile -> {
                         try {
                             fileItem.write(localFile);
                         } catch (Exception e) {
@@ -63,4 +88,29 @@ public class ServletFileUpload extends LocalFileUpload {
         return report;
     }
 
+    /**
+     * 以流的方式上传文件, 逐个读取请求中的文件项并直接写入本地文件
+     *
+     * @param report 文件上传报告
+     */
+    private void uploadStreaming(FileUploadReport report) {
+        org.apache.commons.fileupload.servlet.ServletFileUpload fileUpload = new org.apache.commons.fileupload.servlet.ServletFileUpload();
+        fileUpload.setHeaderEncoding("UTF-8");
+        try {
+            FileItemIterator iterator = fileUpload.getItemIterator(request);
+            while (iterator.hasNext()) {
+                FileItemStream item = iterator.next();
+                if (item.isFormField() || item.getName() == null || item.getName().isEmpty()) {
+                    continue;
+                }
+                try (InputStream in = item.openStream()) {
+                    preFileStreamUpload(report, in, item.getName());
+                }
+            }
+        } catch (FileUploadException | IOException e) {
+            e.printStackTrace();
+            report.addFileUploadFeedback("文件上传失败, 请重新上传", false);
+        }
+    }
+
 }
\ No newline at end of file
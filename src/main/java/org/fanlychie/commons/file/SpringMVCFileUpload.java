@@ -5,6 +5,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Spring MVC 文件上传
@@ -34,8 +36,9 @@ public class SpringMVCFileUpload extends LocalFileUpload {
     @Override
     public FileUploadReport upload() {
         FileUploadReport report = new FileUploadReport();
-        Arrays.stream(files).filter(file -> file != null && !file.isEmpty()).forEach(file -> {
-            preFileUpload(report, file, file.getOriginalFilename(), file.getSize(), localFile -> {
+        List<MultipartFile> parts = Arrays.stream(files).filter(file -> file != null && !file.isEmpty()).collect(Collectors.toList());
+        processParts(report, parts, (partReport, file) -> {
+            preFileUpload(partReport, file, file.getOriginalFilename(), file.getSize(), localFile -> {
                 try {
                     file.transferTo(localFile);
                 } catch (IOException e) {
@@ -4,14 +4,31 @@ import org.fanlychie.commons.file.exception.RuntimeCastException;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * URL 表示的文件
@@ -19,6 +36,31 @@ import java.security.cert.X509Certificate;
  */
 public class URLFile {
 
+    /**
+     * 关闭输入流时排空的最大剩余内容, 单位(B)
+     */
+    private static final int MAX_DRAIN_SIZE = 64 * 1024;
+
+    /**
+     * 分段下载时每段的最小大小, 单位(B)
+     */
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    /**
+     * 断点续传时保存检查点的间隔, 单位(B)
+     */
+    private static final long CHECKPOINT_INTERVAL = 4 * 1024 * 1024;
+
+    /**
+     * 断点续传时首次重试前等待的时间, 之后每次重试加倍, 单位(毫秒)
+     */
+    private static final long INITIAL_BACKOFF = 1000;
+
+    /**
+     * 断点续传时重试前等待的最长时间, 单位(毫秒)
+     */
+    private static final long MAX_BACKOFF = 30 * 1000;
+
     /**
      * 超链接地址
      */
@@ -34,6 +76,21 @@ public class URLFile {
      */
     private int connectTimeout = 30 * 1000;
 
+    /**
+     * 写到文件时并行下载的段数, 默认1, 表示不分段
+     */
+    private int segments = 1;
+
+    /**
+     * 写到文件时是否断点续传, 默认 false
+     */
+    private boolean resumable;
+
+    /**
+     * 断点续传时失败后的重试次数, 默认3次
+     */
+    private int retries = 3;
+
     /**
      * 创建一个 URL 表示的文件
      *
@@ -65,6 +122,50 @@ public class URLFile {
         return this;
     }
 
+    /**
+     * 设置写到文件时并行下载的段数, 默认为 1. 大于 1 时先探测文件大小和服务器是否支持 Range 请求,
+     * 支持时将文件分成多段并行下载, 各段直接写入预先分配好大小的目标文件的对应位置; 不支持时仍以单个连接下载.
+     * 每段不小于 1MB
+     *
+     * @param segments 并行下载的段数
+     * @return
+     */
+    public URLFile setSegments(int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("segments 不能小于 1");
+        }
+        this.segments = segments;
+        return this;
+    }
+
+    /**
+     * 设置写到文件时是否断点续传, 默认为 false. 断点续传时内容先写到目标文件旁的 .part 文件,
+     * 并在 .part.checkpoint 文件中记录 URL、服务器文件的 ETag 或 Last-Modified 以及已写入的字节数;
+     * 下载中断后再次写到同一目标文件时, 以 Range 和 If-Range 请求从中断处继续, 服务器文件已被修改时从头下载;
+     * 下载完成后以原子重命名的方式替换目标文件. 失败后按指数退避重试. 断点续传时不分段下载
+     *
+     * @param resumable true: 断点续传, false: 每次从头下载, 默认 false
+     * @return
+     */
+    public URLFile setResumable(boolean resumable) {
+        this.resumable = resumable;
+        return this;
+    }
+
+    /**
+     * 设置断点续传时失败后的重试次数, 默认为 3次
+     *
+     * @param retries 重试次数, 0 表示不重试
+     * @return
+     */
+    public URLFile setRetries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries 不能小于 0");
+        }
+        this.retries = retries;
+        return this;
+    }
+
     /**
      * 读取字符串内容
      *
@@ -80,6 +181,13 @@ public class URLFile {
      * @param file 目标文件
      */
     public void writeToFile(File file) {
+        if (resumable) {
+            writeToFileResumable(file);
+            return;
+        }
+        if (segments > 1 && writeToFileSegmented(file)) {
+            return;
+        }
         FileUtils.writeInputStreamToOutputStream(getInputStream(), FileUtils.getOutputStream(file));
     }
 
@@ -89,7 +197,7 @@ public class URLFile {
      * @param pathname 目标文件路径名称
      */
     public void writeToFile(String pathname) {
-        FileUtils.writeInputStreamToOutputStream(getInputStream(), FileUtils.getOutputStream(pathname));
+        writeToFile(new File(pathname));
     }
 
     /**
@@ -98,7 +206,7 @@ public class URLFile {
      * @param dir 文件目录
      */
     public void writeToDirectory(File dir) {
-        FileUtils.writeInputStreamToOutputStream(getInputStream(), FileUtils.getOutputStream(new File(dir, FileUtils.getUrlFileName(url))));
+        writeToFile(new File(dir, FileUtils.getUrlFileName(url)));
     }
 
     /**
@@ -107,19 +215,353 @@ public class URLFile {
      * @param pathname 文件目录路径名称
      */
     public void writeToDirectory(String pathname) {
-        FileUtils.writeInputStreamToOutputStream(getInputStream(), FileUtils.getOutputStream(new File(pathname, FileUtils.getUrlFileName(url))));
+        writeToFile(new File(pathname, FileUtils.getUrlFileName(url)));
     }
 
     /**
-     * 获取输入流对象
+     * 获取输入流对象. 读取完毕后应关闭输入流, 关闭时排空未读取的少量剩余内容, 使连接能回到 JDK 的 keep-alive 连接池中被复用.
+     * 启用了 {@link URLFileCache} 时经由本地磁盘缓存读取
      *
      * @return 返回 URL 表示的 InputStream 对象
      */
     public InputStream getInputStream() {
         try {
-            URL source = new URL(url);
-            HttpURLConnection conn = null;
-            if (source.getProtocol().toLowerCase().equals("https")) {
+            if (URLFileCache.isEnabled()) {
+                return URLFileCache.getInputStream(this, url);
+            }
+            return openInputStream(openConnection());
+        } catch (Throwable e) {
+            throw new RuntimeCastException(e);
+        }
+    }
+
+    /**
+     * 断点续传地下载到文件
+     *
+     * @param file 目标文件
+     */
+    private void writeToFileResumable(File file) {
+        File partFile = new File(file.getPath() + ".part");
+        File checkpointFile = new File(file.getPath() + ".part.checkpoint");
+        for (int attempt = 0; ; attempt++) {
+            try {
+                downloadToPartFile(partFile, checkpointFile);
+                Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(checkpointFile.toPath());
+                return;
+            } catch (IOException e) {
+                if (attempt >= retries || (e instanceof HttpStatusException && !((HttpStatusException) e).isRetryable())) {
+                    // 保留 .part 文件和检查点, 下次从中断处继续
+                    throw new RuntimeCastException(e);
+                }
+            }
+            try {
+                Thread.sleep(Math.min(INITIAL_BACKOFF << Math.min(attempt, 16), MAX_BACKOFF));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeCastException(e);
+            }
+        }
+    }
+
+    /**
+     * 下载到 .part 文件, 检查点有效时从检查点记录的位置继续
+     *
+     * @param partFile       .part 文件
+     * @param checkpointFile 检查点文件
+     * @throws IOException
+     */
+    private void downloadToPartFile(File partFile, File checkpointFile) throws IOException {
+        long position = 0;
+        String validator = null;
+        DownloadCheckpoint checkpoint = DownloadCheckpoint.load(checkpointFile);
+        if (checkpoint != null && url.equals(checkpoint.getUrl()) && partFile.isFile()) {
+            // 检查点之后写入的内容可能尚未落盘, 以检查点为准
+            position = Math.min(checkpoint.getBytes(), partFile.length());
+            validator = checkpoint.getValidator();
+        }
+        HttpURLConnection conn = openConnection();
+        if (position > 0) {
+            conn.setRequestProperty("Range", "bytes=" + position + "-");
+            conn.setRequestProperty("If-Range", validator);
+        }
+        int code = conn.getResponseCode();
+        long length;
+        if (code == HttpURLConnection.HTTP_PARTIAL && position > 0) {
+            String contentRange = conn.getHeaderField("Content-Range");
+            if (contentRange == null || !contentRange.startsWith("bytes " + position + "-")) {
+                conn.disconnect();
+                Files.deleteIfExists(checkpointFile.toPath());
+                throw new IOException("服务器返回的分段内容与请求不符: " + contentRange);
+            }
+            String total = contentRange.substring(contentRange.indexOf('/') + 1).trim();
+            length = total.equals("*") ? -1 : Long.parseLong(total);
+        } else if (code == HttpURLConnection.HTTP_OK) {
+            // 服务器文件已被修改或不支持 Range 请求, 从头下载
+            position = 0;
+            validator = getValidator(conn);
+            length = conn.getContentLengthLong();
+            Files.deleteIfExists(checkpointFile.toPath());
+        } else {
+            drain(conn.getErrorStream());
+            if (code == 416) {
+                // 检查点记录的位置已不在服务器文件范围内, 下次从头下载
+                Files.deleteIfExists(checkpointFile.toPath());
+            }
+            throw new HttpStatusException(code, url);
+        }
+        byte[] buffer = BufferPool.acquireArray();
+        try (FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             InputStream in = conn.getInputStream()) {
+            channel.truncate(position);
+            long unsaved = 0;
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        position += channel.write(chunk, position);
+                    }
+                    unsaved += read;
+                    if (validator != null && unsaved >= CHECKPOINT_INTERVAL) {
+                        channel.force(false);
+                        new DownloadCheckpoint(url, validator, position).save(checkpointFile);
+                        unsaved = 0;
+                    }
+                }
+                if (length >= 0 && position != length) {
+                    throw new EOFException("已下载 " + position + "B, 文件大小为 " + length + "B");
+                }
+            } finally {
+                // 没有校验值时无法判断服务器文件是否被修改, 不保存检查点
+                if (validator != null && unsaved > 0) {
+                    channel.force(false);
+                    new DownloadCheckpoint(url, validator, position).save(checkpointFile);
+                }
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 分段并行下载到文件
+     *
+     * @param file 目标文件
+     * @return 服务器不支持 Range 请求或文件太小而不分段时返回 false, 此时目标文件未被改动
+     */
+    private boolean writeToFileSegmented(File file) {
+        long length;
+        String validator;
+        try {
+            HttpURLConnection conn = openConnection();
+            conn.setRequestMethod("HEAD");
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK
+                    || !"bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"))) {
+                conn.disconnect();
+                return false;
+            }
+            length = conn.getContentLengthLong();
+            validator = getValidator(conn);
+        } catch (IOException e) {
+            throw new RuntimeCastException(e);
+        }
+        int count = (int) Math.min(segments, length / MIN_SEGMENT_SIZE);
+        if (count <= 1) {
+            return false;
+        }
+        long segmentSize = (length + count - 1) / count;
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+            FileChannel channel = raf.getChannel();
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (long start = 0; start < length; start += segmentSize) {
+                long begin = start;
+                long end = Math.min(start + segmentSize, length) - 1;
+                futures.add(executor.submit(() -> {
+                    downloadSegment(channel, begin, end, validator);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            file.delete();
+            throw new RuntimeCastException(e);
+        } catch (ExecutionException e) {
+            file.delete();
+            throw new RuntimeCastException(e.getCause());
+        } catch (IOException e) {
+            file.delete();
+            throw new RuntimeCastException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return true;
+    }
+
+    /**
+     * 下载一段内容, 写入文件通道的对应位置
+     *
+     * @param channel   目标文件通道
+     * @param start     起始位置
+     * @param end       结束位置(包含)
+     * @param validator 探测时得到的 ETag 或 Last-Modified, 文件在此之后被修改时服务器不再返回分段内容
+     * @throws IOException
+     */
+    private void downloadSegment(FileChannel channel, long start, long end, String validator) throws IOException {
+        HttpURLConnection conn = openConnection();
+        conn.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        if (validator != null) {
+            conn.setRequestProperty("If-Range", validator);
+        }
+        String contentRange = conn.getHeaderField("Content-Range");
+        if (conn.getResponseCode() != HttpURLConnection.HTTP_PARTIAL || contentRange == null
+                || !contentRange.startsWith("bytes " + start + "-" + end + "/")) {
+            // 可能返回的是整个文件, 不再复用该连接
+            conn.disconnect();
+            throw new IOException("服务器没有返回请求的分段内容 " + start + "-" + end + ", 文件可能已被修改");
+        }
+        byte[] buffer = BufferPool.acquireArray();
+        try (InputStream in = conn.getInputStream()) {
+            long position = start;
+            int read;
+            while (position <= end && (read = in.read(buffer)) != -1) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(read, end - position + 1));
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+            }
+            if (position <= end) {
+                throw new EOFException("分段内容 " + start + "-" + end + " 不完整");
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 获取响应的校验值, 优先使用强 ETag, 其次使用 Last-Modified
+     *
+     * @param conn 已得到响应的连接
+     * @return 返回校验值, 都没有时返回 null
+     */
+    static String getValidator(HttpURLConnection conn) {
+        String etag = conn.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return conn.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * 打开连接, 设置超时时间和请求头, 尚未发出请求
+     *
+     * @return 返回 HttpURLConnection
+     * @throws IOException
+     */
+    HttpURLConnection openConnection() throws IOException {
+        URL source = new URL(url);
+        HttpURLConnection conn = (HttpURLConnection) source.openConnection();
+        if (conn instanceof HttpsURLConnection) {
+            // 使用同一个 SSLSocketFactory, 连接才能被 keep-alive 连接池复用
+            ((HttpsURLConnection) conn).setSSLSocketFactory(TrustAllSSLSocketFactoryHolder.INSTANCE);
+        }
+        conn.setReadTimeout(readTimeout);
+        conn.setConnectTimeout(connectTimeout);
+        conn.setRequestProperty("User-Agent",
+                "Mozilla/5.0 (Windows NT 10.0; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/38.0.2125.122 Safari/537.36 SE 2.X MetaSr 1.0");
+        return conn;
+    }
+
+    /**
+     * 获取连接的响应内容的输入流, 关闭时排空未读取的少量剩余内容
+     *
+     * @param conn 连接
+     * @return 返回输入流
+     * @throws IOException 响应表示失败时抛出
+     */
+    static InputStream openInputStream(HttpURLConnection conn) throws IOException {
+        InputStream in;
+        try {
+            in = conn.getInputStream();
+        } catch (IOException e) {
+            // 排空错误响应, 连接才能被复用
+            drain(conn.getErrorStream());
+            throw e;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                drain(in);
+            }
+        };
+    }
+
+    /**
+     * 排空并关闭输入流. 剩余内容超过 {@link #MAX_DRAIN_SIZE} 时直接关闭, 放弃复用该连接
+     *
+     * @param in 输入流, 可以为 null
+     */
+    static void drain(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        byte[] buffer = BufferPool.acquireArray();
+        try {
+            long drained = 0;
+            int read;
+            while (drained <= MAX_DRAIN_SIZE && (read = in.read(buffer)) != -1) {
+                drained += read;
+            }
+        } catch (IOException e) {
+            // 忽略
+        } finally {
+            BufferPool.release(buffer);
+            try {
+                in.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+    }
+
+    /**
+     * 服务器返回了表示失败的响应状态码
+     */
+    private static class HttpStatusException extends IOException {
+
+        /**
+         * 响应状态码
+         */
+        private final int status;
+
+        HttpStatusException(int status, String url) {
+            super("Server returned HTTP response code: " + status + " for URL: " + url);
+            this.status = status;
+        }
+
+        /**
+         * 是否值得重试, 服务器错误、请求超时、请求过多以及请求范围无效时重试, 其它客户端错误不重试
+         */
+        boolean isRetryable() {
+            return status >= 500 || status == 408 || status == 429 || status == 416;
+        }
+
+    }
+
+    /**
+     * 信任所有证书的 SSLSocketFactory, 首次使用时创建, 之后所有连接共用
+     */
+    private static class TrustAllSSLSocketFactoryHolder {
+
+        private static final SSLSocketFactory INSTANCE;
+
+        static {
+            try {
                 SSLContext sslContext = SSLContext.getInstance("TLS");
                 sslContext.init(null, new TrustManager[]{new X509TrustManager() {
                     @Override
@@ -131,19 +573,12 @@ public class URLFile {
                         return null;
                     }
                 }}, null);
-                conn = (HttpsURLConnection) source.openConnection();
-                ((HttpsURLConnection) conn).setSSLSocketFactory(sslContext.getSocketFactory());
-            } else {
-                conn = (HttpURLConnection) source.openConnection();
+                INSTANCE = sslContext.getSocketFactory();
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeCastException(e);
             }
-            conn.setReadTimeout(readTimeout);
-            conn.setConnectTimeout(connectTimeout);
-            conn.setRequestProperty("User-Agent",
-                    "Mozilla/5.0 (Windows NT 10.0; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/38.0.2125.122 Safari/537.36 SE 2.X MetaSr 1.0");
-            return conn.getInputStream();
-        } catch (Throwable e) {
-            throw new RuntimeCastException(e);
         }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,227 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 批量下载 URL 表示的文件. 以有界的线程池并发下载, 同一主机同时进行的下载数不超过上限,
+ * 任务按主机轮流提交, 使排队的任务分散在不同主机上, 总吞吐量随并发数增长而不受单次往返时间限制
+ * Created by fanlychie on 2026/10/17.
+ */
+public class URLFileBatch {
+
+    /**
+     * 超链接地址列表
+     */
+    private final List<String> urls;
+
+    /**
+     * 并发下载数, 默认8
+     */
+    private int parallelism = 8;
+
+    /**
+     * 同一主机同时进行的下载数, 默认4
+     */
+    private int maxPerHost = 4;
+
+    /**
+     * 读取超时时间, 默认3分钟
+     */
+    private int readTimeout = 3 * 60 * 1000;
+
+    /**
+     * 连接超时时间, 默认30秒
+     */
+    private int connectTimeout = 30 * 1000;
+
+    /**
+     * 创建一个批量下载
+     *
+     * @param urls 超链接地址列表
+     */
+    public URLFileBatch(Collection<String> urls) {
+        this.urls = new ArrayList<>(urls);
+    }
+
+    /**
+     * 设置并发下载数, 默认为 8
+     *
+     * @param parallelism 并发下载数
+     * @return
+     */
+    public URLFileBatch setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism 不能小于 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 设置同一主机同时进行的下载数, 默认为 4
+     *
+     * @param maxPerHost 同一主机同时进行的下载数
+     * @return
+     */
+    public URLFileBatch setMaxPerHost(int maxPerHost) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("maxPerHost 不能小于 1");
+        }
+        this.maxPerHost = maxPerHost;
+        return this;
+    }
+
+    /**
+     * 设置读取超时时间, 默认为 3分钟
+     *
+     * @param readTimeout 超时时间, 毫秒单位
+     * @return
+     */
+    public URLFileBatch setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * 设置连接超时时间, 默认为 30秒
+     *
+     * @param connectTimeout 超时时间, 毫秒单位
+     * @return
+     */
+    public URLFileBatch setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * 写到目录
+     *
+     * @param pathname 文件目录路径名称
+     * @return 返回批量下载报告
+     */
+    public URLFileFetchReport writeToDirectory(String pathname) {
+        return writeToDirectory(new File(pathname));
+    }
+
+    /**
+     * 写到目录, 文件以 URL 的文件名称命名. 单个 URL 失败不影响其它 URL, 失败的原因记录在报告中
+     *
+     * @param dir 文件目录
+     * @return 返回批量下载报告
+     */
+    public URLFileFetchReport writeToDirectory(File dir) {
+        long start = System.currentTimeMillis();
+        URLFileFetchResult[] results = new URLFileFetchResult[urls.size()];
+        // 按主机分组, 组内保持原始顺序
+        Map<String, Deque<Integer>> hostIndexes = new LinkedHashMap<>();
+        Map<String, String> targets = new HashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            String url = urls.get(i);
+            String host;
+            String fileName;
+            try {
+                URL source = new URL(url);
+                host = source.getHost().toLowerCase() + ":" + (source.getPort() == -1 ? source.getDefaultPort() : source.getPort());
+                fileName = FileUtils.getUrlFileName(url);
+            } catch (MalformedURLException | IllegalArgumentException e) {
+                results[i] = new URLFileFetchResult(url, null, 0, 0, "无效的 URL: " + e.getMessage());
+                continue;
+            }
+            File target = new File(dir, fileName);
+            String previous = targets.putIfAbsent(target.getPath(), url);
+            if (previous != null) {
+                results[i] = new URLFileFetchResult(url, target.getPath(), 0, 0, "目标文件与 " + previous + " 重名");
+                continue;
+            }
+            hostIndexes.computeIfAbsent(host, key -> new ArrayDeque<>()).add(i);
+        }
+        Map<String, Semaphore> hostPermits = new HashMap<>();
+        for (String host : hostIndexes.keySet()) {
+            hostPermits.put(host, new Semaphore(maxPerHost));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> futures = new ArrayList<>(urls.size());
+            // 按主机轮流提交
+            while (!hostIndexes.isEmpty()) {
+                Iterator<Map.Entry<String, Deque<Integer>>> iterator = hostIndexes.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Deque<Integer>> entry = iterator.next();
+                    int index = entry.getValue().poll();
+                    if (entry.getValue().isEmpty()) {
+                        iterator.remove();
+                    }
+                    Semaphore permits = hostPermits.get(entry.getKey());
+                    futures.add(executor.submit(() -> {
+                        results[index] = fetch(urls.get(index), dir, permits);
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeCastException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeCastException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new URLFileFetchReport(Arrays.asList(results), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 下载单个 URL. 内容先写到目录下的临时文件, 成功后以原子的方式替换目标文件, 失败时只删除临时文件, 下载前已存在的目标文件保持不变
+     *
+     * @param url     超链接地址
+     * @param dir     文件目录
+     * @param permits 所在主机的许可
+     * @return 返回下载结果
+     * @throws InterruptedException
+     */
+    private URLFileFetchResult fetch(String url, File dir, Semaphore permits) throws InterruptedException {
+        File target = new File(dir, FileUtils.getUrlFileName(url));
+        permits.acquire();
+        long start = System.currentTimeMillis();
+        File temp = null;
+        try {
+            dir.mkdirs();
+            temp = File.createTempFile("." + target.getName() + ".", ".tmp", dir);
+            new URLFile(url).setReadTimeout(readTimeout).setConnectTimeout(connectTimeout).writeToFile(temp);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new URLFileFetchResult(url, target.getPath(), target.length(), System.currentTimeMillis() - start, null);
+        } catch (Throwable e) {
+            Throwable cause = e instanceof RuntimeCastException && e.getCause() != null ? e.getCause() : e;
+            return new URLFileFetchResult(url, target.getPath(), 0, System.currentTimeMillis() - start, cause.toString());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+            permits.release();
+        }
+    }
+
+}
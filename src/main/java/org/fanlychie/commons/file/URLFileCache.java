@@ -0,0 +1,634 @@
+package org.fanlychie.commons.file;
+
+import org.fanlychie.commons.file.exception.RuntimeCastException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * {@link URLFile} 的本地磁盘缓存, 默认不启用. 以 URL 为键缓存响应内容及其 ETag、Last-Modified 和 Cache-Control 信息:
+ * 在 max-age 有效期内直接读取本地缓存, 不访问网络; 过期后以 If-None-Match / If-Modified-Since 条件请求重新验证,
+ * 服务器返回 304 时继续使用本地缓存. 缓存总大小超过上限时按最近最少使用的顺序淘汰.
+ * 响应带有 Cache-Control: no-store, 或既没有有效期也没有校验值时不缓存
+ * Created by fanlychie on 2026/10/17.
+ */
+public final class URLFileCache {
+
+    /**
+     * 缓存内容文件的后缀
+     */
+    private static final String BODY_SUFFIX = ".body";
+
+    /**
+     * 缓存信息文件的后缀
+     */
+    private static final String META_SUFFIX = ".meta";
+
+    /**
+     * 缓存的临时文件名称, 以 URL 的 SHA-256 摘要开头, 以 .tmp 结尾
+     */
+    private static final Pattern TEMP_FILE_PATTERN = Pattern.compile("[0-9a-f]{64}.*\\.tmp");
+
+    /**
+     * 缓存条目, 按访问顺序排列, 最近最少使用的在前
+     */
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 命中的次数, 即在有效期内直接读取本地缓存的次数
+     */
+    private static final LongAdder HIT_COUNT = new LongAdder();
+
+    /**
+     * 未命中的次数, 即从服务器读取完整内容的次数
+     */
+    private static final LongAdder MISS_COUNT = new LongAdder();
+
+    /**
+     * 重新验证的次数, 即服务器返回 304 而继续使用本地缓存的次数
+     */
+    private static final LongAdder REVALIDATED_COUNT = new LongAdder();
+
+    /**
+     * 缓存目录, 未启用时为 null
+     */
+    private static volatile File folder;
+
+    /**
+     * 缓存总大小的上限, 单位(B)
+     */
+    private static long maxBytes;
+
+    /**
+     * 缓存的总大小, 单位(B)
+     */
+    private static long usedBytes;
+
+    // 私有
+    private URLFileCache() {
+
+    }
+
+    /**
+     * 启用缓存. 目录中已有的缓存会被加载, 超过上限的部分被淘汰
+     *
+     * @param folderPathname 缓存目录
+     * @param maxBytes       缓存总大小的上限, 单位(B)
+     */
+    public static synchronized void enable(String folderPathname, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes 必须大于 0");
+        }
+        File dir = new File(folderPathname);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new RuntimeCastException(new FileNotFoundException(dir.getAbsolutePath()));
+        }
+        ENTRIES.clear();
+        usedBytes = 0;
+        URLFileCache.maxBytes = maxBytes;
+        load(dir);
+        folder = dir;
+        evict();
+    }
+
+    /**
+     * 停用缓存, 已缓存的文件保留在磁盘上
+     */
+    public static synchronized void disable() {
+        folder = null;
+        ENTRIES.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * 清空缓存, 删除所有已缓存的文件
+     */
+    public static synchronized void clear() {
+        Iterator<Entry> iterator = ENTRIES.values().iterator();
+        while (iterator.hasNext()) {
+            delete(iterator.next());
+            iterator.remove();
+        }
+        usedBytes = 0;
+    }
+
+    /**
+     * 获取命中的次数
+     *
+     * @return 返回在有效期内直接读取本地缓存的次数
+     */
+    public static long getHitCount() {
+        return HIT_COUNT.sum();
+    }
+
+    /**
+     * 获取未命中的次数
+     *
+     * @return 返回从服务器读取完整内容的次数
+     */
+    public static long getMissCount() {
+        return MISS_COUNT.sum();
+    }
+
+    /**
+     * 获取重新验证的次数
+     *
+     * @return 返回服务器返回 304 而继续使用本地缓存的次数
+     */
+    public static long getRevalidatedCount() {
+        return REVALIDATED_COUNT.sum();
+    }
+
+    /**
+     * 获取缓存的总大小
+     *
+     * @return 返回缓存的总大小, 单位(B)
+     */
+    public static synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 是否已启用缓存
+     *
+     * @return 已启用时返回 true
+     */
+    static boolean isEnabled() {
+        return folder != null;
+    }
+
+    /**
+     * 经由缓存获取 URL 的输入流
+     *
+     * @param urlFile URL 表示的文件, 用于打开连接
+     * @param url     超链接地址
+     * @return 返回输入流
+     * @throws IOException
+     */
+    static InputStream getInputStream(URLFile urlFile, String url) throws IOException {
+        Entry entry;
+        synchronized (URLFileCache.class) {
+            entry = ENTRIES.get(url);
+        }
+        InputStream body = null;
+        if (entry != null) {
+            try {
+                body = new FileInputStream(entry.getBodyFile());
+            } catch (FileNotFoundException e) {
+                // 缓存文件已被删除
+                remove(entry);
+                entry = null;
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (entry != null && now < entry.expires) {
+            HIT_COUNT.increment();
+            touch(entry, now);
+            return body;
+        }
+        HttpURLConnection conn;
+        int code;
+        try {
+            conn = urlFile.openConnection();
+            if (entry != null) {
+                if (entry.etag != null) {
+                    conn.setRequestProperty("If-None-Match", entry.etag);
+                }
+                if (entry.lastModified != null) {
+                    conn.setRequestProperty("If-Modified-Since", entry.lastModified);
+                }
+            }
+            code = conn.getResponseCode();
+        } catch (IOException e) {
+            closeQuietly(body);
+            throw e;
+        }
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+            try {
+                // 304 没有响应内容, 关闭后连接即可被复用
+                URLFile.drain(conn.getInputStream());
+            } catch (IOException e) {
+                // 忽略
+            }
+            revalidated(entry, getExpires(conn, now));
+            REVALIDATED_COUNT.increment();
+            touch(entry, now);
+            return body;
+        }
+        closeQuietly(body);
+        MISS_COUNT.increment();
+        InputStream in = URLFile.openInputStream(conn);
+        if (code != HttpURLConnection.HTTP_OK || isNoStore(conn)) {
+            return in;
+        }
+        long expires = getExpires(conn, now);
+        String etag = conn.getHeaderField("ETag");
+        String lastModified = conn.getHeaderField("Last-Modified");
+        File dir = folder;
+        if (dir == null || (expires <= now && etag == null && lastModified == null)
+                || conn.getContentLengthLong() > getMaxBytes()) {
+            return in;
+        }
+        Entry newEntry = new Entry(url, getName(url), etag, lastModified, expires);
+        File temp;
+        OutputStream out;
+        try {
+            temp = File.createTempFile(newEntry.name, ".tmp", dir);
+            out = new FileOutputStream(temp);
+        } catch (IOException e) {
+            // 无法写入缓存时直接读取
+            return in;
+        }
+        return new CachingInputStream(in, newEntry, temp, out);
+    }
+
+    /**
+     * 加载缓存目录中已有的缓存, 以内容文件的修改时间作为访问顺序. 上次运行中断时遗留的临时文件一并删除
+     *
+     * @param dir 缓存目录
+     */
+    private static void load(File dir) {
+        File[] tempFiles = dir.listFiles((d, name) -> TEMP_FILE_PATTERN.matcher(name).matches());
+        if (tempFiles != null) {
+            for (File tempFile : tempFiles) {
+                tempFile.delete();
+            }
+        }
+        File[] metaFiles = dir.listFiles((d, name) -> name.endsWith(META_SUFFIX));
+        if (metaFiles == null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(metaFiles.length);
+        for (File metaFile : metaFiles) {
+            Entry entry = Entry.load(dir, metaFile);
+            if (entry == null) {
+                metaFile.delete();
+                new File(dir, metaFile.getName().replace(META_SUFFIX, BODY_SUFFIX)).delete();
+                continue;
+            }
+            entries.add(entry);
+        }
+        entries.sort((a, b) -> Long.compare(a.accessed, b.accessed));
+        for (Entry entry : entries) {
+            ENTRIES.put(entry.url, entry);
+            usedBytes += entry.size;
+        }
+    }
+
+    /**
+     * 记录缓存的访问时间. 访问顺序以内容文件的修改时间持久化, 重新加载缓存时据此恢复最近最少使用的顺序
+     *
+     * @param entry 缓存条目
+     * @param now   访问时间
+     */
+    private static void touch(Entry entry, long now) {
+        entry.getBodyFile().setLastModified(now);
+    }
+
+    /**
+     * 内容完整读取后加入缓存
+     *
+     * @param entry 缓存条目
+     * @param temp  缓存内容的临时文件
+     */
+    private static synchronized void commit(Entry entry, File temp) {
+        File dir = folder;
+        if (dir == null || entry.size > maxBytes) {
+            temp.delete();
+            return;
+        }
+        try {
+            entry.folder = dir;
+            Files.move(temp.toPath(), entry.getBodyFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entry.save();
+        } catch (IOException e) {
+            e.printStackTrace(); // 缓存失败不影响读取
+            temp.delete();
+            return;
+        }
+        Entry previous = ENTRIES.put(entry.url, entry);
+        if (previous != null) {
+            usedBytes -= previous.size;
+        }
+        usedBytes += entry.size;
+        evict();
+    }
+
+    /**
+     * 重新验证后更新缓存的有效期
+     *
+     * @param entry   缓存条目
+     * @param expires 新的过期时间
+     */
+    private static synchronized void revalidated(Entry entry, long expires) {
+        entry.expires = expires;
+        if (ENTRIES.get(entry.url) == entry) {
+            try {
+                entry.save();
+            } catch (IOException e) {
+                // 下次重新验证
+            }
+        }
+    }
+
+    /**
+     * 移除缓存条目
+     *
+     * @param entry 缓存条目
+     */
+    private static synchronized void remove(Entry entry) {
+        if (ENTRIES.remove(entry.url, entry)) {
+            usedBytes -= entry.size;
+            delete(entry);
+        }
+    }
+
+    /**
+     * 淘汰最近最少使用的缓存, 直到总大小不超过上限
+     */
+    private static void evict() {
+        Iterator<Entry> iterator = ENTRIES.values().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            usedBytes -= entry.size;
+            delete(entry);
+        }
+    }
+
+    private static void delete(Entry entry) {
+        entry.getMetaFile().delete();
+        entry.getBodyFile().delete();
+    }
+
+    private static synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 响应是否禁止缓存
+     */
+    private static boolean isNoStore(HttpURLConnection conn) {
+        String cacheControl = conn.getHeaderField("Cache-Control");
+        return cacheControl != null && cacheControl.toLowerCase().contains("no-store");
+    }
+
+    /**
+     * 根据 Cache-Control 的 max-age 或 Expires 计算过期时间, no-cache 表示每次都需重新验证
+     *
+     * @param conn 已得到响应的连接
+     * @param now  请求的时间
+     * @return 返回过期时间, 需要重新验证时返回 0
+     */
+    private static long getExpires(HttpURLConnection conn, long now) {
+        String cacheControl = conn.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            long maxAge = -1;
+            for (String directive : cacheControl.toLowerCase().split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-cache")) {
+                    return 0;
+                }
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(directive.substring("max-age=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        // 忽略无效的值
+                    }
+                }
+            }
+            if (maxAge >= 0) {
+                return now + maxAge * 1000;
+            }
+        }
+        return conn.getExpiration();
+    }
+
+    /**
+     * 获取 URL 对应的缓存文件名称
+     */
+    private static String getName(String url) {
+        byte[] digest = LocalFileDeduplicator.newDigest().digest(url.getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return name.toString();
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+
+        private final String url;
+
+        private final String name;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        private long expires;
+
+        private long size;
+
+        private long accessed;
+
+        private File folder;
+
+        Entry(String url, String name, String etag, String lastModified, long expires) {
+            this.url = url;
+            this.name = name;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        File getBodyFile() {
+            return new File(folder, name + BODY_SUFFIX);
+        }
+
+        File getMetaFile() {
+            return new File(folder, name + META_SUFFIX);
+        }
+
+        /**
+         * 读取缓存信息文件
+         *
+         * @return 返回缓存条目, 信息不完整或内容文件不一致时返回 null
+         */
+        static Entry load(File dir, File metaFile) {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(metaFile)) {
+                properties.load(in);
+                String name = metaFile.getName().substring(0, metaFile.getName().length() - META_SUFFIX.length());
+                Entry entry = new Entry(properties.getProperty("url"), name, properties.getProperty("etag"),
+                        properties.getProperty("lastModified"), Long.parseLong(properties.getProperty("expires")));
+                entry.size = Long.parseLong(properties.getProperty("size"));
+                entry.folder = dir;
+                File bodyFile = entry.getBodyFile();
+                if (entry.url == null || !bodyFile.isFile() || bodyFile.length() != entry.size) {
+                    return null;
+                }
+                entry.accessed = bodyFile.lastModified();
+                return entry;
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * 写入缓存信息文件
+         */
+        void save() throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("url", url);
+            if (etag != null) {
+                properties.setProperty("etag", etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty("lastModified", lastModified);
+            }
+            properties.setProperty("expires", String.valueOf(expires));
+            properties.setProperty("size", String.valueOf(size));
+            File temp = new File(folder, name + META_SUFFIX + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp.toPath(), getMetaFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+    }
+
+    /**
+     * 读取的同时写入缓存的输入流, 读取到末尾后关闭时加入缓存; 没有读取到末尾、超过上限或写入出错时放弃缓存
+     */
+    private static class CachingInputStream extends FilterInputStream {
+
+        private final Entry entry;
+
+        private final File temp;
+
+        private OutputStream out;
+
+        private boolean complete;
+
+        CachingInputStream(InputStream in, Entry entry, File temp, OutputStream out) {
+            super(in);
+            this.entry = entry;
+            this.temp = temp;
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete = true;
+            } else if (out != null) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                complete = true;
+            } else if (out != null) {
+                write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 跳过的内容无法缓存
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        complete = false;
+                    }
+                    out = null;
+                    if (complete) {
+                        commit(entry, temp);
+                    } else {
+                        temp.delete();
+                    }
+                }
+            }
+        }
+
+        private void write(byte[] b, int off, int len) {
+            entry.size += len;
+            if (entry.size > getMaxBytes()) {
+                abandon();
+                return;
+            }
+            try {
+                out.write(b, off, len);
+            } catch (IOException e) {
+                abandon();
+            }
+        }
+
+        private void abandon() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // 忽略
+                }
+                out = null;
+                temp.delete();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.fanlychie.commons.file;
+
+import java.util.List;
+
+/**
+ * 批量下载报告, 每个 URL 的下载结果按 URL 的原始顺序排列
+ * Created by fanlychie on 2026/10/17.
+ */
+public class URLFileFetchReport {
+
+    /**
+     * 每个 URL 的下载结果
+     */
+    private final List<URLFileFetchResult> results;
+
+    /**
+     * 总耗时, 单位(毫秒)
+     */
+    private final long elapsedMillis;
+
+    /**
+     * 创建一个批量下载报告
+     *
+     * @param results       每个 URL 的下载结果
+     * @param elapsedMillis 总耗时, 单位(毫秒)
+     */
+    URLFileFetchReport(List<URLFileFetchResult> results, long elapsedMillis) {
+        this.results = results;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 获取每个 URL 的下载结果
+     *
+     * @return 返回按 URL 原始顺序排列的下载结果
+     */
+    public List<URLFileFetchResult> getResults() {
+        return results;
+    }
+
+    /**
+     * 获取成功的个数
+     *
+     * @return 返回成功的个数
+     */
+    public int getSuccessfulNumber() {
+        int successfulNumber = 0;
+        for (URLFileFetchResult result : results) {
+            if (result.isSuccessful()) {
+                successfulNumber++;
+            }
+        }
+        return successfulNumber;
+    }
+
+    /**
+     * 获取失败的个数
+     *
+     * @return 返回失败的个数
+     */
+    public int getFailedNumber() {
+        return results.size() - getSuccessfulNumber();
+    }
+
+    /**
+     * 获取下载的总字节数
+     *
+     * @return 返回下载的总字节数
+     */
+    public long getTotalBytes() {
+        long totalBytes = 0;
+        for (URLFileFetchResult result : results) {
+            totalBytes += result.getBytes();
+        }
+        return totalBytes;
+    }
+
+    /**
+     * 获取总耗时
+     *
+     * @return 返回总耗时, 单位(毫秒)
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 获取吞吐量
+     *
+     * @return 返回每秒下载的字节数, 总耗时为 0 时返回 0
+     */
+    public long getBytesPerSecond() {
+        return elapsedMillis == 0 ? 0 : getTotalBytes() * 1000 / elapsedMillis;
+    }
+
+    /**
+     * 报告是否健康的, 若是, 表明全部下载成功
+     *
+     * @return true/false
+     */
+    public boolean isHealthy() {
+        return !results.isEmpty() && getFailedNumber() == 0;
+    }
+
+}
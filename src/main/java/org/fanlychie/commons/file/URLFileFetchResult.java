@@ -0,0 +1,105 @@
+package org.fanlychie.commons.file;
+
+/**
+ * 批量下载中单个 URL 的下载结果
+ * Created by fanlychie on 2026/10/17.
+ */
+public class URLFileFetchResult {
+
+    /**
+     * 超链接地址
+     */
+    private final String url;
+
+    /**
+     * 目标文件路径, URL 无效时为 null
+     */
+    private final String pathname;
+
+    /**
+     * 下载的字节数
+     */
+    private final long bytes;
+
+    /**
+     * 耗时, 单位(毫秒), 不包括排队等待的时间
+     */
+    private final long durationMillis;
+
+    /**
+     * 失败的原因, 成功时为 null
+     */
+    private final String failureReason;
+
+    /**
+     * 创建一个下载结果
+     *
+     * @param url            超链接地址
+     * @param pathname       目标文件路径
+     * @param bytes          下载的字节数
+     * @param durationMillis 耗时, 单位(毫秒)
+     * @param failureReason  失败的原因, 成功时为 null
+     */
+    URLFileFetchResult(String url, String pathname, long bytes, long durationMillis, String failureReason) {
+        this.url = url;
+        this.pathname = pathname;
+        this.bytes = bytes;
+        this.durationMillis = durationMillis;
+        this.failureReason = failureReason;
+    }
+
+    /**
+     * 获取超链接地址
+     *
+     * @return 返回超链接地址
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * 获取目标文件路径
+     *
+     * @return 返回目标文件路径, URL 无效时返回 null
+     */
+    public String getPathname() {
+        return pathname;
+    }
+
+    /**
+     * 获取下载的字节数
+     *
+     * @return 返回下载的字节数, 失败时返回 0
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 获取耗时
+     *
+     * @return 返回耗时, 单位(毫秒), 不包括排队等待的时间
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * 获取失败的原因
+     *
+     * @return 返回失败的原因, 成功时返回 null
+     */
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    /**
+     * 是否下载成功
+     *
+     * @return true/false
+     */
+    public boolean isSuccessful() {
+        return failureReason == null;
+    }
+
+}
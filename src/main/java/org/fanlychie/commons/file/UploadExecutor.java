@@ -0,0 +1,87 @@
+package org.fanlychie.commons.file;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行处理上传文件的线程池, 由所有 {@link LocalFileUpload} 共享, 避免每次上传都创建和销毁线程.
+ * 线程数由 {@link LocalFileUploadConfig} 配置, 空闲的线程超时后退出, 线程均为守护线程
+ * Created by fanlychie on 2026/10/17.
+ */
+final class UploadExecutor {
+
+    /**
+     * 空闲线程的存活时间, 单位(秒)
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * 线程编号
+     */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /**
+     * 线程池, 首次使用时创建
+     */
+    private static volatile ThreadPoolExecutor executor;
+
+    // 私有
+    private UploadExecutor() {
+
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param task 任务
+     * @return 返回任务的 Future
+     */
+    static Future<?> submit(Runnable task) {
+        while (true) {
+            ThreadPoolExecutor current = executor;
+            if (current == null) {
+                synchronized (UploadExecutor.class) {
+                    current = executor;
+                    if (current == null) {
+                        current = executor = newExecutor(LocalFileUploadConfig.uploadThreads);
+                    }
+                }
+            }
+            try {
+                return current.submit(task);
+            } catch (RejectedExecutionException e) {
+                if (executor == current) {
+                    throw e;
+                }
+                // 线程池刚被重新配置关闭, 提交到新的线程池
+            }
+        }
+    }
+
+    /**
+     * 关闭当前的线程池, 已提交的任务继续执行完毕, 下次提交时按新的配置创建线程池
+     */
+    static synchronized void clear() {
+        ThreadPoolExecutor current = executor;
+        executor = null;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "file-upload-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+}
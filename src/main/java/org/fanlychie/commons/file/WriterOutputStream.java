@@ -0,0 +1,60 @@
+package org.fanlychie.commons.file;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * 将 ASCII 字节流适配为字符流输出, 用于 Base64 等纯 ASCII 内容. 关闭此流时只刷新而不关闭字符流
+ * Created by fanlychie on 2026/10/17.
+ */
+class WriterOutputStream extends OutputStream {
+
+    /**
+     * 字符流
+     */
+    private final Writer writer;
+
+    /**
+     * 字符缓冲区
+     */
+    private final char[] buffer = new char[8 * 1024];
+
+    /**
+     * 创建一个字节流
+     *
+     * @param writer 字符流
+     */
+    WriterOutputStream(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        writer.write(b & 0xFF);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = Math.min(len, buffer.length);
+            for (int i = 0; i < count; i++) {
+                buffer[i] = (char) (b[off + i] & 0xFF);
+            }
+            writer.write(buffer, 0, count);
+            off += count;
+            len -= count;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+}
@@ -3,6 +3,7 @@ package org.fanlychie.commons.file.web;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.fanlychie.commons.file.FileUtils;
+import org.fanlychie.commons.file.LocalFileMetadata;
 import org.fanlychie.commons.file.LocalFileUploadConfig;
 import org.fanlychie.commons.file.exception.LocalFileNotFoundException;
 
@@ -24,6 +25,11 @@ public class LocalFileAccessServlet extends HttpServlet {
      */
     private String fileKeyParameter = "file";
 
+    /**
+     * Cache-Control 响应头的值, 本地文件 Key 是随机生成且不会被改写的, 默认允许客户端永久缓存
+     */
+    private String cacheControl = "public, max-age=31536000, immutable";
+
     /**
      * 日志
      */
@@ -35,6 +41,10 @@ public class LocalFileAccessServlet extends HttpServlet {
         if (fileKeyParameterStr != null) {
             fileKeyParameter = fileKeyParameterStr;
         }
+        String cacheControlStr = config.getInitParameter("cacheControl");
+        if (cacheControlStr != null) {
+            cacheControl = cacheControlStr.trim();
+        }
     }
 
     @Override
@@ -44,7 +54,22 @@ public class LocalFileAccessServlet extends HttpServlet {
             log.warn("访问本地文件的 " + fileKeyParameter + " 参数值不合法: " + fileKey);
         } else {
             try {
-                FileUtils.accessLocalFile(response, fileKey);
+                LocalFileMetadata metadata = FileUtils.getLocalFileMetadata(fileKey);
+                if (metadata == null) {
+                    throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
+                }
+                if (!cacheControl.isEmpty()) {
+                    response.setHeader("Cache-Control", cacheControl);
+                }
+                String eTag = metadata.getETag();
+                long lastModified = metadata.getLastModified();
+                if (isNotModified(request, eTag, lastModified)) {
+                    response.setHeader("ETag", eTag);
+                    response.setDateHeader("Last-Modified", lastModified);
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                FileUtils.accessLocalFile(request, response, fileKey);
             } catch (LocalFileNotFoundException e) {
                 if (log.isDebugEnabled()) {
                     log.debug("找不到 Key 表示的文件: " + fileKey);
@@ -55,4 +80,34 @@ public class LocalFileAccessServlet extends HttpServlet {
         }
     }
 
+    /**
+     * 判断客户端缓存的文件是否仍然有效, If-None-Match 请求头优先于 If-Modified-Since
+     *
+     * @param request      HttpServletRequest
+     * @param eTag         文件的实体标签
+     * @param lastModified 文件的最后修改时间
+     * @return 客户端缓存有效时返回 true
+     */
+    private boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package org.fanlychie.commons.file.web;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.fanlychie.commons.file.FileUtils;
+import org.fanlychie.commons.file.LocalFileMetadata;
 import org.fanlychie.commons.file.LocalFileUploadConfig;
 import org.fanlychie.commons.file.exception.LocalFileNotFoundException;
 
@@ -11,7 +12,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
 
 /**
@@ -30,6 +30,16 @@ public class LocalFileDownloadServlet extends HttpServlet {
      */
     private String fileNameParameter = "name";
 
+    /**
+     * 是否以非阻塞的方式异步下载, 默认 false
+     */
+    private boolean async;
+
+    /**
+     * 异步下载的超时时间, 单位(毫秒), 默认 0, 表示不超时
+     */
+    private long asyncTimeout;
+
     /**
      * 日志
      */
@@ -45,6 +55,14 @@ public class LocalFileDownloadServlet extends HttpServlet {
         if (fileNameParameterStr != null) {
             fileNameParameter = fileNameParameterStr;
         }
+        String asyncStr = config.getInitParameter("async");
+        if (asyncStr != null) {
+            async = Boolean.parseBoolean(asyncStr);
+        }
+        String asyncTimeoutStr = config.getInitParameter("asyncTimeout");
+        if (asyncTimeoutStr != null) {
+            asyncTimeout = Long.parseLong(asyncTimeoutStr);
+        }
     }
 
     @Override
@@ -53,15 +71,15 @@ public class LocalFileDownloadServlet extends HttpServlet {
         if (fileKey == null || fileKey.length() < LocalFileUploadConfig.getChildFolderLength()) {
             throw new IllegalArgumentException("下载本地文件的 " + fileKeyParameter + " 参数值不合法: " + fileKey);
         } else {
-            File file = FileUtils.getLocalFile(fileKey);
-            if (file == null) {
+            LocalFileMetadata metadata = FileUtils.getLocalFileMetadata(fileKey);
+            if (metadata == null) {
                 throw new LocalFileNotFoundException("找不到 Key 表示的文件: " + fileKey);
             }
             String fileName = request.getParameter(fileNameParameter);
             if (fileName == null) {
-                fileName = file.getName();
+                fileName = fileKey;
             } else {
-                String extension = FileUtils.getFileExtension(file);
+                String extension = FileUtils.getFileExtension(fileKey);
                 if (!extension.isEmpty() && !fileName.endsWith(extension)) {
                     fileName += "." + extension;
                 }
@@ -69,7 +87,11 @@ public class LocalFileDownloadServlet extends HttpServlet {
             if (log.isDebugEnabled()) {
                 log.debug("下载本地文件, Key: " + fileKey);
             }
-            FileUtils.provideFileDownload(response, file, fileName);
+            if (async && request.isAsyncSupported()) {
+                FileUtils.provideLocalFileDownloadAsync(request, response, fileKey, fileName, asyncTimeout);
+            } else {
+                FileUtils.provideLocalFileDownload(request, response, fileKey, fileName);
+            }
         }
     }
 
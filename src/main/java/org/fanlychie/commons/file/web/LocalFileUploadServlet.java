@@ -3,8 +3,9 @@ package org.fanlychie.commons.file.web;
 import com.alibaba.fastjson.JSON;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.fanlychie.commons.file.AsyncServletFileUpload;
 import org.fanlychie.commons.file.FileUploadReport;
-import org.fanlychie.commons.file.FileUtils;
+import org.fanlychie.commons.file.ServletFileUpload;
 import org.fanlychie.commons.file.exception.RuntimeCastException;
 
 import javax.servlet.ServletConfig;
@@ -35,6 +36,21 @@ public class LocalFileUploadServlet extends HttpServlet {
      */
     private String[] allowedFileExtensions;
 
+    /**
+     * 是否以流的方式上传, 默认 false
+     */
+    private boolean streaming;
+
+    /**
+     * 是否以非阻塞的方式上传, 默认 false. 容器不支持异步请求时仍以阻塞的方式上传
+     */
+    private boolean async;
+
+    /**
+     * 异步上传的超时时间, 单位(毫秒), 默认 0, 表示不超时
+     */
+    private long asyncTimeout;
+
     /**
      * 日志
      */
@@ -65,12 +81,33 @@ public class LocalFileUploadServlet extends HttpServlet {
                 allowedFileExtensions[i] = allowedFileExtensions[i].trim();
             }
         }
+        String streamingStr = config.getInitParameter("streaming");
+        if (streamingStr != null) {
+            this.streaming = Boolean.parseBoolean(streamingStr.trim());
+        }
+        String asyncStr = config.getInitParameter("async");
+        if (asyncStr != null) {
+            this.async = Boolean.parseBoolean(asyncStr.trim());
+        }
+        String asyncTimeoutStr = config.getInitParameter("asyncTimeout");
+        if (asyncTimeoutStr != null) {
+            try {
+                this.asyncTimeout = Long.parseLong(asyncTimeoutStr.trim());
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("asyncTimeout 不是一个有效的整数: " + asyncTimeoutStr);
+            }
+        }
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (async && request.isAsyncSupported()) {
+            doAsyncPost(request, response);
+            return;
+        }
         try {
-            FileUploadReport report = FileUtils.uploadFile(request)
+            FileUploadReport report = new ServletFileUpload(request)
+                    .setStreaming(streaming)
                     .setAllowedFileSize(minSize, maxSize)
                     .setAllowedFileExtensions(allowedFileExtensions)
                     .upload();
@@ -87,6 +124,28 @@ public class LocalFileUploadServlet extends HttpServlet {
         }
     }
 
+    /**
+     * 以非阻塞的方式上传, 请求体读取完毕后再响应上传报告
+     */
+    private void doAsyncPost(HttpServletRequest request, HttpServletResponse response) {
+        try {
+            AsyncServletFileUpload upload = new AsyncServletFileUpload(request);
+            upload.setAllowedFileSize(minSize, maxSize).setAllowedFileExtensions(allowedFileExtensions);
+            upload.upload(report -> {
+                String reportJsonStr = JSON.toJSONString(report);
+                if (log.isDebugEnabled()) {
+                    log.debug("本地文件上传: " + reportJsonStr);
+                }
+                writeOut(response, reportJsonStr);
+            }, asyncTimeout);
+        } catch (Throwable e) {
+            log.error("本地文件上传失败", e);
+            FileUploadReport report = new FileUploadReport();
+            report.getFailedMsgs().add("本地文件上传失败");
+            writeOut(response, JSON.toJSONString(report));
+        }
+    }
+
     private void writeOut(HttpServletResponse response, String content) {
         response.setDateHeader("Expires", 0);
         response.setHeader("Pragma", "no-cache");
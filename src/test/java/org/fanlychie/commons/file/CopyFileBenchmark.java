@@ -0,0 +1,102 @@
+package org.fanlychie.commons.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FileUtils#copyFile(File, File)} 的 JMH 基准测试, 比较基于 FileChannel.transferTo 的拷贝与原先经过
+ * BufferedInputStream/BufferedOutputStream 和 512KB 堆内数组的拷贝循环. 不随 mvn test 执行, 编译测试代码后运行 main 方法,
+ * eg: mvn test-compile 之后以测试类路径执行 java org.fanlychie.commons.file.CopyFileBenchmark
+ * Created by fanlychie on 2026/10/17.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyFileBenchmark {
+
+    /**
+     * 源文件的大小, 单位(MB)
+     */
+    @Param({"1", "64", "512"})
+    public int sizeMb;
+
+    private File folder;
+
+    private File src;
+
+    private File dest;
+
+    @Setup(Level.Trial)
+    public void createSource() throws IOException {
+        folder = Files.createTempDirectory("copy-benchmark").toFile();
+        src = new File(folder, "src.bin");
+        dest = new File(folder, "dest.bin");
+        byte[] block = new byte[1024 * 1024];
+        new Random(3).nextBytes(block);
+        try (OutputStream out = new FileOutputStream(src)) {
+            for (int i = 0; i < sizeMb; i++) {
+                out.write(block);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        src.delete();
+        dest.delete();
+        folder.delete();
+    }
+
+    @Benchmark
+    public void transferTo() {
+        FileUtils.copyFile(src, dest);
+    }
+
+    /**
+     * 原先的拷贝循环
+     */
+    @Benchmark
+    public void streamLoop() throws IOException {
+        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(src));
+             BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(dest))) {
+            int read;
+            byte[] buffer = new byte[512 * 1024];
+            while ((read = bis.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CopyFileBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
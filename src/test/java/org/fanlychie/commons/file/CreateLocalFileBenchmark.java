@@ -0,0 +1,119 @@
+package org.fanlychie.commons.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link FileUtils#createLocalFile(String)} 的并发 JMH 基准测试, 比较以 CREATE_NEW 原子新建文件的分配方式与原先先检查后新建的分配方式.
+ * 子目录已存在时每次分配的元数据系统调用: 原先为 isDirectory、isFile 检查 Key, 再 exists、exists、createNewFile 新建文件, 共 5 次,
+ * 子目录不存在时还有 mkdirs; 现在只有 1 次 open(O_CREAT|O_EXCL). 系统调用次数可以用 strace -f -c -e trace=%file 运行此基准测试核对.
+ * 子目录长度设为 2 并预先创建全部 256 个子目录, 测量子目录已存在的常态. 不随 mvn test 执行, 编译测试代码后运行 main 方法
+ * Created by fanlychie on 2026/10/17.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class CreateLocalFileBenchmark {
+
+    /**
+     * 是否生成按时间排序的文件 Key
+     */
+    @Param({"false", "true"})
+    public boolean timeOrdered;
+
+    private File root;
+
+    @Setup(Level.Iteration)
+    public void createRoot() throws IOException {
+        root = Files.createTempDirectory("create-benchmark").toFile();
+        LocalFileUploadConfig config = new LocalFileUploadConfig();
+        config.setStorageRootFolder(root.getPath());
+        config.setChildFolderLength(2);
+        config.setShardLevels(1);
+        config.setTimeOrderedFileKey(timeOrdered);
+        for (int i = 0; i < 256; i++) {
+            new File(root, String.format("%02x", i)).mkdir();
+        }
+    }
+
+    /**
+     * 每次迭代之后删除创建的文件, 避免目录中的文件越来越多影响下一次迭代
+     */
+    @TearDown(Level.Iteration)
+    public void deleteRoot() throws IOException {
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public LocalFile createNew() {
+        return FileUtils.createLocalFile("jpg");
+    }
+
+    /**
+     * 原先的分配方式, 存在先检查后新建的竞争, 并发时可能把同一个 Key 分配给两次上传
+     */
+    @Benchmark
+    public File checkThenCreate() throws IOException {
+        String fileKey;
+        do {
+            fileKey = UUID.randomUUID().toString().replace("-", "");
+        } while (getLocalFile(fileKey) != null);
+        fileKey += ".jpg";
+        File localFileFoloder = new File(root, fileKey.substring(0, 2));
+        if (!localFileFoloder.exists()) {
+            localFileFoloder.mkdirs();
+        }
+        File localFile = new File(localFileFoloder, fileKey);
+        if (localFile.exists()) {
+            throw new IllegalStateException("文件已经存在: " + fileKey);
+        }
+        localFile.createNewFile();
+        return localFile;
+    }
+
+    private File getLocalFile(String fileKey) {
+        File localFileFoloder = new File(root, fileKey.substring(0, 2));
+        if (localFileFoloder.isDirectory()) {
+            File localFile = new File(localFileFoloder, fileKey);
+            if (localFile.isFile()) {
+                return localFile;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CreateLocalFileBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
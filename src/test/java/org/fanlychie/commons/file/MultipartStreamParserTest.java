@@ -0,0 +1,265 @@
+package org.fanlychie.commons.file;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link MultipartStreamParser} 的测试, 请求体按不同的大小分块到达, 分隔符、头部结束标志和结束标志被拆到多块中
+ * Created by fanlychie on 2026/10/17.
+ */
+public class MultipartStreamParserTest {
+
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    /**
+     * 文件部分的内容, 含有与分隔符和头部结束标志相似的字节序列
+     */
+    private static final byte[] FILE_CONTENT = fileContent(BOUNDARY);
+
+    @Test
+    public void parsesWholeBody() throws IOException {
+        RecordingHandler handler = parse(body(BOUNDARY), BOUNDARY, Integer.MAX_VALUE, null);
+        handler.assertParts(FILE_CONTENT);
+    }
+
+    @Test
+    public void parsesOneByteChunks() throws IOException {
+        RecordingHandler handler = parse(body(BOUNDARY), BOUNDARY, 1, null);
+        handler.assertParts(FILE_CONTENT);
+    }
+
+    @Test
+    public void parsesRandomChunks() throws IOException {
+        byte[] body = body(BOUNDARY);
+        for (int seed = 0; seed < 200; seed++) {
+            RecordingHandler handler = parse(body, BOUNDARY, 64, new Random(seed));
+            handler.assertParts(FILE_CONTENT);
+        }
+    }
+
+    @Test
+    public void parsesUnquotedBoundary() throws IOException {
+        String boundary = MultipartStreamParser.getBoundary("multipart/form-data; boundary=" + BOUNDARY);
+        assertEquals(BOUNDARY, boundary);
+        parse(body(boundary), boundary, 7, null).assertParts(FILE_CONTENT);
+    }
+
+    @Test
+    public void parsesQuotedBoundary() throws IOException {
+        String boundary = MultipartStreamParser.getBoundary("Multipart/Form-Data; charset=UTF-8; BOUNDARY=\"=_Part 0.1\"");
+        assertEquals("=_Part 0.1", boundary);
+        byte[] content = fileContent(boundary);
+        parse(body(boundary, content), boundary, 1, null).assertParts(content);
+    }
+
+    @Test
+    public void rejectsMissingBoundary() {
+        assertNull(MultipartStreamParser.getBoundary("application/x-www-form-urlencoded"));
+        assertNull(MultipartStreamParser.getBoundary("multipart/form-data"));
+        assertNull(MultipartStreamParser.getBoundary("multipart/form-data; boundary=\"\""));
+        assertNull(MultipartStreamParser.getBoundary(null));
+    }
+
+    @Test
+    public void ignoresEpilogue() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(body(BOUNDARY));
+        body.write(("\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"x\"\r\n\r\nignored").getBytes(StandardCharsets.UTF_8));
+        parse(body.toByteArray(), BOUNDARY, 3, null).assertParts(FILE_CONTENT);
+    }
+
+    @Test
+    public void rejectsHeaderOverMaxLength() throws IOException {
+        char[] value = new char[20 * 1024];
+        Arrays.fill(value, 'a');
+        byte[] body = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + new String(value) + "\"\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[]{1, 1000, body.length}) {
+            RecordingHandler handler = new RecordingHandler();
+            MultipartStreamParser parser = new MultipartStreamParser(BOUNDARY, handler);
+            try {
+                feed(parser, body, chunk, null);
+                fail("头部超过最大长度, 解析应失败");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("头部"));
+            }
+            assertTrue(handler.names.isEmpty());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidContentAfterBoundary() {
+        byte[] body = ("--" + BOUNDARY + "xx\r\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            parse(body, BOUNDARY, 1, null);
+            fail("分隔符之后的内容不合法, 解析应失败");
+        } catch (IOException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void finishFailsOnTruncatedBody() throws IOException {
+        byte[] content = ("data\r\n--" + BOUNDARY.substring(1)).getBytes(StandardCharsets.UTF_8);
+        byte[] body = body(BOUNDARY, content);
+        // 结束标志 "--" 之后的内容都不影响解析完成
+        int complete = indexOf(body, ("--" + BOUNDARY + "--").getBytes(StandardCharsets.UTF_8)) + BOUNDARY.length() + 4;
+        for (int length = 0; length < complete; length++) {
+            RecordingHandler handler = new RecordingHandler();
+            MultipartStreamParser parser = new MultipartStreamParser(BOUNDARY, handler);
+            feed(parser, Arrays.copyOf(body, length), 5, null);
+            assertFalse(parser.isFinished());
+            try {
+                parser.finish();
+                fail("请求体在 " + length + "B 处截断, finish() 应失败");
+            } catch (IOException e) {
+                // 期望的异常
+            }
+        }
+        RecordingHandler handler = new RecordingHandler();
+        MultipartStreamParser parser = new MultipartStreamParser(BOUNDARY, handler);
+        feed(parser, Arrays.copyOf(body, complete), 5, null);
+        assertTrue(parser.isFinished());
+        parser.finish();
+        handler.assertParts(content);
+    }
+
+    /**
+     * 按块解析请求体
+     *
+     * @param body     请求体
+     * @param boundary 分隔符
+     * @param chunk    块的大小, 指定了随机数时为块的最大大小
+     * @param random   随机数, 为 null 时块的大小固定
+     * @return 返回记录了解析结果的处理器
+     */
+    private static RecordingHandler parse(byte[] body, String boundary, int chunk, Random random) throws IOException {
+        RecordingHandler handler = new RecordingHandler();
+        MultipartStreamParser parser = new MultipartStreamParser(boundary, handler);
+        feed(parser, body, chunk, random);
+        assertTrue(parser.isFinished());
+        parser.finish();
+        return handler;
+    }
+
+    private static void feed(MultipartStreamParser parser, byte[] body, int chunk, Random random) throws IOException {
+        int position = 0;
+        while (position < body.length) {
+            int count = Math.min(random == null ? chunk : 1 + random.nextInt(chunk), body.length - position);
+            // 每块数据放在更大的数组的中间, 检验 offset 的处理
+            byte[] data = new byte[count + 2];
+            System.arraycopy(body, position, data, 1, count);
+            parser.feed(data, 1, count);
+            position += count;
+        }
+    }
+
+    private static byte[] body(String boundary) throws IOException {
+        return body(boundary, fileContent(boundary));
+    }
+
+    /**
+     * 构建请求体: 前言、一个普通的表单域、一个文件、一个空文件名的文件和结束分隔符之后的尾声
+     */
+    private static byte[] body(String boundary, byte[] content) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("preamble\r\n--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n\r\n"
+                + "hello\r\n--" + boundary + "\r\n"
+                + "content-disposition: form-data; name=\"file\"; filename=\"中文.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"empty\"; filename=\"\"\r\n\r\n"
+                + "\r\n--" + boundary + "--\r\nepilogue").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static byte[] fileContent(String boundary) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Random random = new Random(3);
+        byte[] noise = new byte[997];
+        String almost = "\r\n--" + boundary.substring(0, boundary.length() - 1);
+        for (int i = 0; i < 20; i++) {
+            random.nextBytes(noise);
+            content.write(noise, 0, noise.length);
+            byte[] lookalike = (i % 2 == 0 ? almost : "\r\n\r\n--").getBytes(StandardCharsets.ISO_8859_1);
+            content.write(lookalike, 0, lookalike.length);
+        }
+        return content.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] target) {
+        outer:
+        for (int i = 0; i <= data.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (data[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 记录解析到的各部分
+     */
+    private static class RecordingHandler implements MultipartStreamParser.Handler {
+
+        private final List<String> names = new ArrayList<>();
+
+        private final List<String> fileNames = new ArrayList<>();
+
+        private final List<ByteArrayOutputStream> contents = new ArrayList<>();
+
+        private boolean open;
+
+        @Override
+        public void startPart(String name, String fileName) {
+            assertFalse("上一部分尚未结束", open);
+            open = true;
+            names.add(name);
+            fileNames.add(fileName);
+            contents.add(new ByteArrayOutputStream());
+        }
+
+        @Override
+        public void partData(byte[] data, int offset, int count) {
+            assertTrue("部分尚未开始", open);
+            assertTrue(count > 0);
+            contents.get(contents.size() - 1).write(data, offset, count);
+        }
+
+        @Override
+        public void endPart() {
+            assertTrue("部分尚未开始", open);
+            open = false;
+        }
+
+        void assertParts(byte[] fileContent) {
+            assertFalse(open);
+            assertEquals(Arrays.asList("title", "file", "empty"), names);
+            assertEquals(Arrays.asList(null, "中文.bin", ""), fileNames);
+            assertEquals("hello", new String(contents.get(0).toByteArray(), StandardCharsets.UTF_8));
+            assertArrayEquals(fileContent, contents.get(1).toByteArray());
+            assertEquals(0, contents.get(2).size());
+        }
+
+    }
+
+}
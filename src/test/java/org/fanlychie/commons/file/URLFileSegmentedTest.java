@@ -0,0 +1,155 @@
+package org.fanlychie.commons.file;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link URLFile} 分段下载的测试, 使用本地内嵌的 HTTP 服务器
+ * Created by fanlychie on 2026/10/17.
+ */
+public class URLFileSegmentedTest {
+
+    /**
+     * 服务器文件的内容, 足够分成 4 段
+     */
+    private static final byte[] DATA = new byte[4 * 1024 * 1024 + 123];
+
+    /**
+     * HEAD 响应的 ETag
+     */
+    private static final String ETAG = "\"v1\"";
+
+    static {
+        new Random(3).nextBytes(DATA);
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * 服务器是否声明支持 Range 请求
+     */
+    private volatile boolean acceptRanges = true;
+
+    /**
+     * GET 响应的 ETag, 与 HEAD 响应的 ETag 不同时模拟文件在探测之后被修改
+     */
+    private volatile String getETag = ETAG;
+
+    private final AtomicInteger partialResponses = new AtomicInteger();
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void downloadsInParallelRanges() throws IOException {
+        File file = temporaryFolder.newFile();
+        FileUtils.openUrlFile(url()).setSegments(4).writeToFile(file);
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+        assertEquals(4, partialResponses.get());
+        assertEquals(0, fullResponses.get());
+    }
+
+    @Test
+    public void fallsBackToSingleRequestWithoutAcceptRanges() throws IOException {
+        acceptRanges = false;
+        File file = temporaryFolder.newFile();
+        FileUtils.openUrlFile(url()).setSegments(4).writeToFile(file);
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+        assertEquals(0, partialResponses.get());
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void failsWhenIfRangeDoesNotMatch() throws IOException {
+        getETag = "\"v2\"";
+        File file = new File(temporaryFolder.getRoot(), "changed.bin");
+        try {
+            FileUtils.openUrlFile(url()).setSegments(4).writeToFile(file);
+            fail("文件在探测之后被修改, 分段下载应失败");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertFalse(file.exists());
+        assertEquals(0, partialResponses.get());
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data.bin";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Headers headers = exchange.getResponseHeaders();
+            if (acceptRanges) {
+                headers.add("Accept-Ranges", "bytes");
+            }
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                headers.add("ETag", ETAG);
+                headers.add("Content-Length", String.valueOf(DATA.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            headers.add("ETag", getETag);
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            if (acceptRanges && range != null && (ifRange == null || ifRange.equals(getETag))) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(bounds[0]);
+                int end = Integer.parseInt(bounds[1]);
+                headers.add("Content-Range", "bytes " + start + "-" + end + "/" + DATA.length);
+                partialResponses.incrementAndGet();
+                exchange.sendResponseHeaders(206, end - start + 1);
+                exchange.getResponseBody().write(DATA, start, end - start + 1);
+                return;
+            }
+            fullResponses.incrementAndGet();
+            exchange.sendResponseHeaders(200, DATA.length);
+            exchange.getResponseBody().write(DATA);
+        } catch (IOException e) {
+            // 客户端放弃读取
+        } finally {
+            exchange.close();
+        }
+    }
+
+}